@@ -0,0 +1,93 @@
+package model;
+
+import model.merge.MergeFunction;
+
+import static resources.TreeConfig.TREE_ROOT_IND;
+
+/*
+ * Represents a segment tree over any number of leaves n stored in exactly 2n slots: leaf i lives at n + i and
+ * node i (1 <= i < n) holds the merge of nodes 2i and 2i+1, with no padding up to a power of 2
+ *
+ * When n is not a power of 2 some internal nodes merge leaves that are not next to each other, but the
+ * bottom-up walk only ever reads nodes lying wholly inside the queried range, so every query is exact; modular
+ * results are canonical, so they match a SegmentTree even though the nodes group leaves differently. Slot 0 is
+ * unused, and n may be at most MAX_LEAVES so that the 2n slots fit in one Java array.
+ */
+public class CompactSegmentTree implements RangeQueryEngine {
+    public static final int MAX_LEAVES = (Integer.MAX_VALUE - 8) / 2;
+
+    private final int[] tree; // Holds the leaves at n to 2n-1 and the internal nodes at 1 to n-1
+    private final MergeFunction mergeFn; // Tracks the merge function being used
+    private final int leafCount; // Tracks the number of leaves
+
+    /*
+     * REQUIRES: 1 <= values.length <= MAX_LEAVES
+     * MODIFIES: this
+     * EFFECTS: Builds the tree from the given leaf values with the given merge function
+     */
+    public CompactSegmentTree(int[] values, MergeFunction mergeFn) {
+        this.mergeFn = mergeFn;
+        leafCount = values.length;
+        tree = new int[2 * leafCount];
+        System.arraycopy(values, 0, tree, leafCount, leafCount);
+        for (int i = leafCount - 1; i >= TREE_ROOT_IND; i--) {
+            tree[i] = mergeFn.merge(tree[2 * i], tree[2 * i + 1]);
+        }
+
+        EventLog.getInstance().logEvent(new Event("Generated new compact segment tree with " + leafCount
+                + " values"));
+    }
+
+    @Override
+    public void updateVal(int valInd, int val) {
+        int treeInd = leafCount + valInd;
+        tree[treeInd] = val;
+        for (treeInd >>= 1; treeInd >= TREE_ROOT_IND; treeInd >>= 1) {
+            tree[treeInd] = mergeFn.merge(tree[2 * treeInd], tree[2 * treeInd + 1]);
+        }
+    }
+
+    @Override
+    public int rangeSumProduct(int targetL, int targetR) {
+        int resL = 0;
+        int resR = 0;
+        boolean hasL = false;
+        boolean hasR = false;
+
+        for (int l = targetL + leafCount, r = targetR + leafCount + 1; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) == 1) {
+                resL = hasL ? mergeFn.merge(resL, tree[l]) : tree[l];
+                hasL = true;
+                l++;
+            }
+            if ((r & 1) == 1) {
+                r--;
+                resR = hasR ? mergeFn.merge(tree[r], resR) : tree[r];
+                hasR = true;
+            }
+        }
+
+        if (!hasL) {
+            return hasR ? mergeFn.canonical(resR) : mergeFn.identity();
+        }
+        return hasR ? mergeFn.merge(resL, resR) : mergeFn.canonical(resL);
+    }
+
+    /*
+     * REQUIRES: Valid index between 0 and getLeafCount()-1
+     * EFFECTS: Returns the current value of the leaf at the specified index
+     */
+    public int getLeafVal(int ind) {
+        return tree[leafCount + ind];
+    }
+
+    @Override
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    @Override
+    public MergeFunction getMergeFn() {
+        return mergeFn;
+    }
+}
@@ -0,0 +1,199 @@
+package model;
+
+import model.merge.MergeFunction;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static resources.TreeConfig.TREE_ROOT_IND;
+
+/*
+ * Represents a SegmentTree that can be shared between threads: any number of threads may call updateVal and
+ * rangeSumProduct at the same time
+ *
+ * Nodes use the same layout as SegmentTree (leaf i at capacity + i) but live in an AtomicLongArray where every
+ * cell holds the node value in its low 32 bits and a version stamp, bumped on every write, in its high 32 bits.
+ * A writer sets its leaf and then refreshes every ancestor with a compare-and-set of the merge of its children
+ * against the stamped cell it read; a failed CAS is retried once, which is enough because the writer that beat it
+ * read the cell, and so the children, after our child changed. Comparing stamps rather than values means a parent
+ * whose value has gone back to an older one (easy with Max, Min or Or) is never overwritten by a stale merge,
+ * unless 2^32 writes to it happen between one writer's read and its CAS.
+ *
+ * Queries take no lock either. A query reads the stamped cells of the canonical nodes of its range and reads them
+ * again until two reads in a row see the same cells, stamps included; the values then all held at one instant
+ * between the two reads, and the query merges those. Only writes to those O(log n) nodes make a query read again,
+ * so queries keep completing under sustained writes, and a range with a single canonical node is read once.
+ *
+ * Guarantee: every query returns the merge over a set of updates that includes every update that completed
+ * before the query began and, with every update it includes, every update that completed before that one began;
+ * updates running during the query may or may not be included. An update reaches every ancestor of its leaf
+ * before it returns, and a later update only writes merges that already include it, so one instant of the
+ * canonical nodes always reflects such a set.
+ */
+public class ConcurrentSegmentTree implements RangeQueryEngine {
+    private static final long VALUE_MASK = 0xFFFFFFFFL;
+
+    private final AtomicLongArray tree; // Holds computation result of subtree, stamped with a version
+    private final MergeFunction mergeFn; // Tracks the merge function being used
+    private final int leafCount; // Tracks the number of leaves the tree was built with
+    private final int capacity; // Tracks the number of leaf slots in the tree, always a power of 2
+    private final int maxCanonicalNodes; // Tracks the max number of canonical nodes of a range
+
+    /*
+     * REQUIRES: values.length >= 1
+     * MODIFIES: this
+     * EFFECTS: Builds a concurrent segment tree from the given leaf values with the given merge function
+     */
+    public ConcurrentSegmentTree(int[] values, MergeFunction mergeFn) {
+        this.mergeFn = mergeFn;
+        leafCount = values.length;
+        capacity = (leafCount == 1) ? 1 : Integer.highestOneBit(leafCount - 1) << 1;
+        maxCanonicalNodes = 2 * (Integer.numberOfTrailingZeros(capacity) + 1);
+
+        int[] nodes = new int[2 * capacity];
+        System.arraycopy(values, 0, nodes, capacity, leafCount);
+        for (int i = capacity + leafCount; i < 2 * capacity; i++) {
+            nodes[i] = mergeFn.identity();
+        }
+        for (int i = capacity - 1; i >= TREE_ROOT_IND; i--) {
+            nodes[i] = mergeFn.merge(nodes[2 * i], nodes[2 * i + 1]);
+        }
+        tree = new AtomicLongArray(nodes.length);
+        for (int i = 0; i < nodes.length; i++) {
+            tree.set(i, nodes[i] & VALUE_MASK);
+        }
+
+        EventLog.getInstance().logEvent(new Event("Generated new concurrent segment tree with " + leafCount
+                + " values"));
+    }
+
+    /*
+     * Updates the leaf node with the given value and then refreshes the parent values until root
+     * REQUIRES: Valid index between 0 and getLeafCount()-1
+     * MODIFIES: this
+     * EFFECTS: leaf is set to val and every ancestor is refreshed with lock-free CAS retries; safe to call
+     *          from any number of threads
+     */
+    public void updateVal(int valInd, int val) {
+        int treeInd = capacity + valInd;
+        tree.getAndUpdate(treeInd, cell -> stamped(cell, val));
+        for (treeInd >>= 1; treeInd >= TREE_ROOT_IND; treeInd >>= 1) {
+            if (!refresh(treeInd)) {
+                refresh(treeInd);
+            }
+        }
+    }
+
+    /*
+     * Computes the sum/product for the given range
+     * REQUIRES: Valid increasing range between 0 and getLeafCount()-1
+     * EFFECTS: Returns the merge of the leaves in the range l to r; see the class comment for the
+     *          consistency guarantee under concurrent updates
+     */
+    public int rangeSumProduct(int l, int r) {
+        int[] nodes = new int[maxCanonicalNodes];
+        int count = canonicalNodes(l, r, nodes);
+        long[] cells = new long[count];
+        for (int i = 0; i < count; i++) {
+            cells[i] = tree.get(nodes[i]);
+        }
+        if (count > 1) {
+            while (!recollect(nodes, count, cells)) {
+                Thread.onSpinWait();
+            }
+        }
+
+        int result = valueOf(cells[0]);
+        for (int i = 1; i < count; i++) {
+            result = mergeFn.merge(result, valueOf(cells[i]));
+        }
+        return mergeFn.canonical(result);
+    }
+
+    /*
+     * REQUIRES: Valid index between 0 and getLeafCount()-1
+     * EFFECTS: Returns the current value of the leaf at the specified index
+     */
+    public int getLeafVal(int ind) {
+        return valueOf(tree.get(capacity + ind));
+    }
+
+    /*
+     * EFFECTS: Returns the number of leaves the tree was built with
+     */
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    /*
+     * EFFECTS: Returns the merge function being used
+     */
+    public MergeFunction getMergeFn() {
+        return mergeFn;
+    }
+
+    /*
+     * REQUIRES: treeInd between 1 and capacity-1
+     * MODIFIES: this
+     * EFFECTS: Replaces the node with the merge of its children if the node has not been written in the
+     *          meantime, even with the same value; returns true if the replacement happened
+     */
+    private boolean refresh(int treeInd) {
+        long old = tree.get(treeInd);
+        int merged = mergeFn.merge(valueOf(tree.get(2 * treeInd)), valueOf(tree.get(2 * treeInd + 1)));
+        return tree.compareAndSet(treeInd, old, stamped(old, merged));
+    }
+
+    /*
+     * EFFECTS: Returns the cell holding val with the version stamp of the given cell bumped
+     */
+    private static long stamped(long cell, int val) {
+        return ((cell >>> 32) + 1) << 32 | (val & VALUE_MASK);
+    }
+
+    /*
+     * EFFECTS: Returns the node value held in the given cell
+     */
+    private static int valueOf(long cell) {
+        return (int) cell;
+    }
+
+    /*
+     * REQUIRES: Valid increasing range(targetL targetR) between 0 and leafCount-1;
+     *           nodes.length == maxCanonicalNodes
+     * MODIFIES: nodes
+     * EFFECTS: Fills the front of nodes with the canonical nodes of the range in left-to-right order and
+     *          returns how many there are (at least 1)
+     */
+    private int canonicalNodes(int targetL, int targetR, int[] nodes) {
+        int left = 0;
+        int right = nodes.length;
+        for (int l = targetL + capacity, r = targetR + capacity + 1; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) == 1) {
+                nodes[left++] = l++;
+            }
+            if ((r & 1) == 1) {
+                nodes[--right] = --r;
+            }
+        }
+        // Right-side nodes were found right to left from the back, so they already follow the left ones in order
+        System.arraycopy(nodes, right, nodes, left, nodes.length - right);
+        return left + nodes.length - right;
+    }
+
+    /*
+     * MODIFIES: cells
+     * EFFECTS: Reads the cells of the first count nodes again and returns true if every one is unchanged since
+     *          the last read; otherwise keeps the new cells and returns false
+     */
+    private boolean recollect(int[] nodes, int count, long[] cells) {
+        boolean unchanged = true;
+        for (int i = 0; i < count; i++) {
+            long cell = tree.get(nodes[i]);
+            if (cell != cells[i]) {
+                cells[i] = cell;
+                unchanged = false;
+            }
+        }
+        return unchanged;
+    }
+}
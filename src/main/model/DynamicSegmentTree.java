@@ -0,0 +1,191 @@
+package model;
+
+import model.merge.MergeFunction;
+
+import java.util.Arrays;
+
+/*
+ * Represents a dynamic (implicit) segment tree over every key from 0 to MAX_KEY where every key starts at the
+ * identity of the merge function: nodes exist only on the paths to keys holding other values, so updates and
+ * queries cost O(log MAX_KEY) and memory is proportional to the number of such keys
+ *
+ * Nodes live in parallel primitive arrays (a pool) and are referred to by index, with index NIL standing for an
+ * absent subtree whose value is the identity. Setting a key back to the identity releases its leaf and every
+ * ancestor left without children onto a free list that later allocations reuse before growing the pool.
+ */
+public class DynamicSegmentTree {
+    public static final long MAX_KEY = Long.MAX_VALUE;
+
+    private static final int NIL = 0;
+    private static final int INITIAL_POOL = 64;
+
+    private int[] left = new int[INITIAL_POOL]; // Holds the left child of every pooled node, the next free node if free
+    private int[] right = new int[INITIAL_POOL]; // Holds the right child of every pooled node
+    private int[] vals = new int[INITIAL_POOL]; // Holds the merge of the subtree of every pooled node
+    private int used = 1; // Tracks the number of pool slots ever handed out, slot NIL included
+    private int freeHead = NIL; // Tracks the first released node available for reuse
+    private int nodeCount; // Tracks the number of nodes currently in the tree
+    private int root = NIL; // Tracks the root node covering 0 to MAX_KEY
+
+    private final MergeFunction mergeFn; // Tracks the merge function being used
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Constructs an empty tree where every key holds the identity of the given merge function
+     */
+    public DynamicSegmentTree(MergeFunction mergeFn) {
+        this.mergeFn = mergeFn;
+        vals[NIL] = mergeFn.identity();
+    }
+
+    /*
+     * REQUIRES: 0 <= key <= MAX_KEY
+     * MODIFIES: this
+     * EFFECTS: Sets the key to val, creating the missing nodes on its path or releasing the ones that only
+     *          held the key when val is the identity
+     */
+    public void updateVal(long key, int val) {
+        root = update(root, 0, MAX_KEY, key, val);
+    }
+
+    /*
+     * REQUIRES: 0 <= l <= r <= MAX_KEY
+     * EFFECTS: Returns the merge of every key in the range l to r
+     */
+    public int rangeSumProduct(long l, long r) {
+        return mergeFn.canonical(computeRange(root, 0, MAX_KEY, l, r));
+    }
+
+    /*
+     * REQUIRES: 0 <= key <= MAX_KEY
+     * EFFECTS: Returns the value of the key
+     */
+    public int getVal(long key) {
+        return computeRange(root, 0, MAX_KEY, key, key);
+    }
+
+    /*
+     * EFFECTS: Returns the number of nodes currently in the tree
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /*
+     * EFFECTS: Returns the merge function being used
+     */
+    public MergeFunction getMergeFn() {
+        return mergeFn;
+    }
+
+    /*
+     * REQUIRES: node covers the keys lo to hi; lo <= key <= hi
+     * MODIFIES: this
+     * EFFECTS: Sets the key to val below node and returns the node now covering lo to hi (NIL if empty)
+     */
+    private int update(int node, long lo, long hi, long key, int val) {
+        if (lo == hi) {
+            return updateLeaf(node, val);
+        }
+        if (node == NIL) {
+            if (val == mergeFn.identity()) {
+                return NIL;
+            }
+            node = allocate();
+        }
+
+        // The child is stored only after the call returns, since allocating below may replace the pool arrays
+        long mid = lo + (hi - lo) / 2;
+        if (key <= mid) {
+            int child = update(left[node], lo, mid, key, val);
+            left[node] = child;
+        } else {
+            int child = update(right[node], mid + 1, hi, key, val);
+            right[node] = child;
+        }
+        return pull(node);
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Sets the leaf node to val and returns it, allocating it if it is NIL and releasing it (returning
+     *          NIL) if val is the identity
+     */
+    private int updateLeaf(int node, int val) {
+        if (val == mergeFn.identity()) {
+            release(node);
+            return NIL;
+        }
+        if (node == NIL) {
+            node = allocate();
+        }
+        vals[node] = val;
+        return node;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Recomputes the inner node from its children and returns it, or releases it and returns NIL if
+     *          both children are empty
+     */
+    private int pull(int node) {
+        if (left[node] == NIL && right[node] == NIL) {
+            release(node);
+            return NIL;
+        }
+        vals[node] = mergeFn.merge(vals[left[node]], vals[right[node]]);
+        return node;
+    }
+
+    /*
+     * REQUIRES: node covers the keys lo to hi
+     * EFFECTS: Returns the merge of the keys targetL to targetR below node
+     */
+    private int computeRange(int node, long lo, long hi, long targetL, long targetR) {
+        if (node == NIL || targetR < lo || hi < targetL) {
+            return mergeFn.identity();
+        }
+        if (targetL <= lo && hi <= targetR) {
+            return vals[node];
+        }
+        long mid = lo + (hi - lo) / 2;
+        return mergeFn.merge(computeRange(left[node], lo, mid, targetL, targetR),
+                computeRange(right[node], mid + 1, hi, targetL, targetR));
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Returns an empty node, reusing a released one if possible and growing the pool otherwise
+     */
+    private int allocate() {
+        int node;
+        if (freeHead != NIL) {
+            node = freeHead;
+            freeHead = left[node];
+        } else {
+            if (used == vals.length) {
+                left = Arrays.copyOf(left, 2 * used);
+                right = Arrays.copyOf(right, 2 * used);
+                vals = Arrays.copyOf(vals, 2 * used);
+            }
+            node = used++;
+        }
+        left[node] = NIL;
+        right[node] = NIL;
+        vals[node] = mergeFn.identity();
+        nodeCount++;
+        return node;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Puts the node on the free list; does nothing for NIL
+     */
+    private void release(int node) {
+        if (node != NIL) {
+            left[node] = freeHead;
+            freeHead = node;
+            nodeCount--;
+        }
+    }
+}
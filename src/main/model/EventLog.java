@@ -1,7 +1,7 @@
 package model;
 
-import java.util.ArrayList;
-import java.util.Collection;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Iterator;
 
 /**
@@ -9,20 +9,27 @@ import java.util.Iterator;
  * We use the Singleton Design Pattern to ensure that there is only
  * one EventLog in the system and that the system has global access
  * to the single instance of the EventLog.
+ * The log keeps only the most recent MAX_EVENTS events, so trees that
+ * log every update (such as SegmentTree) do not grow it without bound.
  */
 public class EventLog implements Iterable<Event> {
+    /**
+     * the number of most recent events the log keeps
+     */
+    public static final int MAX_EVENTS = 10_000;
+
     /**
      * the only EventLog in the system (Singleton Design Pattern)
      */
     private static EventLog theLog;
-    private Collection<Event> events;
+    private Deque<Event> events;
 
     /**
      * Prevent external construction.
      * (Singleton Design Pattern).
      */
     private EventLog() {
-        events = new ArrayList<Event>();
+        events = new ArrayDeque<Event>();
     }
 
     /**
@@ -40,12 +47,16 @@ public class EventLog implements Iterable<Event> {
     }
 
     /**
-     * Adds an event to the event log.
+     * Adds an event to the event log, dropping the oldest event
+     * if the log already holds MAX_EVENTS events.
      *
      * @param e the event to be added
      */
     public void logEvent(Event e) {
-        events.add(e);
+        if (events.size() == MAX_EVENTS) {
+            events.removeFirst();
+        }
+        events.addLast(e);
     }
 
     /**
@@ -0,0 +1,75 @@
+package model;
+
+import model.merge.MergeFunction;
+
+/*
+ * Represents a Fenwick tree (binary indexed tree) for an invertible merge function: node i holds the merge of the
+ * leaves (i - lowbit(i), i], so every prefix is the merge of O(log n) nodes and a range is the prefix up to r with
+ * the prefix before l removed by MergeFunction.unmerge
+ *
+ * Only n + 1 ints are stored (a SegmentTree stores 2 * capacity); the current value of a leaf is recomputed as a
+ * one leaf range when an update needs it. Nodes hold reduced merges, which is exact because merge and unmerge
+ * give canonical results (see MergeFunction.canonical), so ranges match every other engine for negative leaves.
+ */
+public class FenwickTree implements RangeQueryEngine {
+    private final int[] tree; // Holds the merge of (i - lowbit(i), i] at index i, index 0 unused
+    private final MergeFunction mergeFn; // Tracks the merge function being used
+
+    /*
+     * REQUIRES: values.length >= 1; mergeFn.isInvertible()
+     * MODIFIES: this
+     * EFFECTS: Builds the tree from the given leaf values in O(n)
+     */
+    public FenwickTree(int[] values, MergeFunction mergeFn) {
+        if (!mergeFn.isInvertible()) {
+            throw new IllegalArgumentException(mergeFn.getName() + " is not invertible");
+        }
+        this.mergeFn = mergeFn;
+        tree = new int[values.length + 1];
+        System.arraycopy(values, 0, tree, 1, values.length);
+        for (int i = 1; i < tree.length; i++) {
+            int parent = i + (i & -i);
+            if (parent < tree.length) {
+                tree[parent] = mergeFn.merge(tree[parent], tree[i]);
+            }
+        }
+
+        EventLog.getInstance().logEvent(new Event("Generated new fenwick tree with " + values.length
+                + " values"));
+    }
+
+    @Override
+    public void updateVal(int valInd, int val) {
+        int delta = mergeFn.unmerge(val, rangeSumProduct(valInd, valInd));
+        for (int i = valInd + 1; i < tree.length; i += i & -i) {
+            tree[i] = mergeFn.merge(tree[i], delta);
+        }
+    }
+
+    @Override
+    public int rangeSumProduct(int l, int r) {
+        return mergeFn.unmerge(prefix(r + 1), prefix(l));
+    }
+
+    @Override
+    public int getLeafCount() {
+        return tree.length - 1;
+    }
+
+    @Override
+    public MergeFunction getMergeFn() {
+        return mergeFn;
+    }
+
+    /*
+     * REQUIRES: 0 <= len <= getLeafCount()
+     * EFFECTS: Returns the merge of the first len leaves
+     */
+    private int prefix(int len) {
+        int result = mergeFn.identity();
+        for (int i = len; i > 0; i -= i & -i) {
+            result = mergeFn.merge(result, tree[i]);
+        }
+        return result;
+    }
+}
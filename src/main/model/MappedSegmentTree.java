@@ -0,0 +1,325 @@
+package model;
+
+import model.merge.MergeFunction;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static resources.TreeConfig.TREE_ROOT_IND;
+
+/*
+ * Represents a SegmentTree whose node array lives in a memory-mapped file instead of the Java heap, so trees
+ * with billions of leaves can be used and survive restarts; reopening an existing file maps it without
+ * rebuilding anything
+ *
+ * File layout (little-endian): a HEADER_BYTES header followed by 2 * capacity int nodes in the same layout as
+ * SegmentTree (leaf i at capacity + i, root at TREE_ROOT_IND). A single MappedByteBuffer is limited to 2GB,
+ * so the file is mapped as CHUNK_BYTES chunks; nodes never straddle a chunk because both the header and the
+ * chunk size are multiples of the node size.
+ *
+ * A new file is built and forced before its header is written and forced, so a crash while building leaves a file
+ * without the magic number, which reopening rejects instead of mapping a partly built tree.
+ *
+ * Writes reach the page cache immediately but are only guaranteed to be on disk after force(). Updates are not
+ * written to the EventLog, which would otherwise grow with every update of a tree that outlives the app.
+ */
+public class MappedSegmentTree implements Closeable {
+    public static final int MAGIC = 0x53454754; // "SEGT"
+    public static final int FORMAT_VERSION = 1;
+    public static final int HEADER_BYTES = 64;
+
+    private static final int NAME_BYTES = 32;
+    private static final int NODE_BYTES = Integer.BYTES;
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_BYTES = 1L << CHUNK_SHIFT;
+    private static final long MAX_LEAVES = Long.MAX_VALUE / (8 * NODE_BYTES); // Keeps the file size in a long
+
+    private final FileChannel channel; // Holds the open file backing the tree
+    private final MappedByteBuffer[] chunks; // Holds the mapped regions of the file, CHUNK_BYTES each
+    private final MergeFunction mergeFn; // Tracks the merge function being used
+    private final long leafCount; // Tracks the number of leaves the tree was built with
+    private final long capacity; // Tracks the number of leaf slots in the tree, always a power of 2
+
+    /*
+     * REQUIRES: values.length >= 1
+     * MODIFIES: this
+     * EFFECTS: Creates (or overwrites) the file and builds the tree from the given leaf values with the given
+     *          merge function; throws IOException if the file cannot be created or mapped
+     */
+    public MappedSegmentTree(Path file, int[] values, MergeFunction mergeFn) throws IOException {
+        this(file, values.length, mergeFn, values);
+    }
+
+    /*
+     * REQUIRES: leafCount >= 1
+     * MODIFIES: this
+     * EFFECTS: Creates (or overwrites) the file and builds a tree of leafCount leaves all holding the identity
+     *          of the given merge function; throws IOException if the file cannot be created or mapped
+     */
+    public MappedSegmentTree(Path file, long leafCount, MergeFunction mergeFn) throws IOException {
+        this(file, leafCount, mergeFn, null);
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Reopens a tree previously created in the given file without rebuilding it;
+     *          throws IOException if the file cannot be mapped or is not a valid, completely built segment tree
+     *          file
+     */
+    public MappedSegmentTree(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = readHeader(file);
+            leafCount = header.getLong();
+            capacity = header.getLong();
+            int modulus = header.getInt();
+            String name = readName(file, header);
+            if (leafCount < 1 || leafCount > MAX_LEAVES || capacity != capacityFor(leafCount)
+                    || channel.size() != fileSize(capacity)) {
+                throw new IOException(file + " is truncated or corrupt");
+            }
+            mergeFn = MergeFunction.fromName(name, modulus);
+            chunks = map(channel, fileSize(capacity));
+        } catch (IllegalArgumentException e) {
+            channel.close();
+            throw new IOException(file + " has an unknown merge function", e);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+        EventLog.getInstance().logEvent(new Event("Opened memory-mapped segment tree with " + leafCount
+                + " values from " + file));
+    }
+
+    /*
+     * REQUIRES: leafCount >= 1; values is null or holds leafCount values
+     * MODIFIES: this
+     * EFFECTS: Creates the file, builds the tree from values (identity leaves if null), forces it and only then
+     *          writes and forces the header
+     */
+    private MappedSegmentTree(Path file, long leafCount, MergeFunction mergeFn, int[] values) throws IOException {
+        this.mergeFn = mergeFn;
+        this.leafCount = leafCount;
+        capacity = capacityFor(leafCount);
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            chunks = map(channel, fileSize(capacity));
+            build(values);
+            force();
+            writeHeader();
+            chunks[0].force();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+        EventLog.getInstance().logEvent(new Event("Generated new memory-mapped segment tree with " + leafCount
+                + " values in " + file));
+    }
+
+    /*
+     * Updates the leaf node with the given value and then refreshes the parent values until root
+     * REQUIRES: Valid index between 0 and getLeafCount()-1
+     * MODIFIES: this
+     * EFFECTS: leaf is set to val and every ancestor is recomputed from its children
+     */
+    public void updateVal(long valInd, int val) {
+        long treeInd = capacity + valInd;
+        put(treeInd, val);
+        for (treeInd >>= 1; treeInd >= TREE_ROOT_IND; treeInd >>= 1) {
+            put(treeInd, mergeFn.merge(get(2 * treeInd), get(2 * treeInd + 1)));
+        }
+    }
+
+    /*
+     * Computes the sum/product for the given range
+     * REQUIRES: Valid increasing range between 0 and getLeafCount()-1
+     * EFFECTS: Returns the merge of the leaves in the range l to r, walking the canonical nodes bottom-up
+     */
+    public int rangeSumProduct(long targetL, long targetR) {
+        int resL = mergeFn.identity();
+        int resR = mergeFn.identity();
+        for (long l = targetL + capacity, r = targetR + capacity + 1; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) == 1) {
+                resL = mergeFn.merge(resL, get(l++));
+            }
+            if ((r & 1) == 1) {
+                resR = mergeFn.merge(get(--r), resR);
+            }
+        }
+        return mergeFn.merge(resL, resR);
+    }
+
+    /*
+     * REQUIRES: Valid index between 0 and getLeafCount()-1
+     * EFFECTS: Returns the current value of the leaf at the specified index
+     */
+    public int getLeaf(long ind) {
+        return get(capacity + ind);
+    }
+
+    /*
+     * EFFECTS: Returns the number of leaves the tree was built with
+     */
+    public long getLeafCount() {
+        return leafCount;
+    }
+
+    /*
+     * EFFECTS: Returns the merge function being used
+     */
+    public MergeFunction getMergeFn() {
+        return mergeFn;
+    }
+
+    /*
+     * EFFECTS: Writes every modified node to the storage device, so the tree survives a crash
+     */
+    public void force() {
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Flushes the tree to disk and closes the file; the tree must not be used afterwards
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Reads the header and checks its magic number and format version; returns it positioned at the
+     *          leaf count; throws IOException if the file is too short or not a segment tree file
+     */
+    private ByteBuffer readHeader(Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining() && channel.read(header) >= 0) {
+            // keep reading until the header is full or the file ends
+        }
+        header.flip();
+        if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+            throw new IOException(file + " is not a completely built segment tree file");
+        }
+        int version = header.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported segment tree file version " + version);
+        }
+        return header;
+    }
+
+    /*
+     * MODIFIES: header
+     * EFFECTS: Reads the merge function name and its length from the header;
+     *          throws IOException if the length does not fit in the header
+     */
+    private static String readName(Path file, ByteBuffer header) throws IOException {
+        int nameLen = header.getInt();
+        if (nameLen < 0 || nameLen > NAME_BYTES) {
+            throw new IOException(file + " has a corrupt header");
+        }
+        byte[] name = new byte[nameLen];
+        header.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /*
+     * REQUIRES: leafCount >= 1
+     * EFFECTS: Returns the number of leaf slots of a tree with leafCount leaves
+     */
+    private static long capacityFor(long leafCount) {
+        return (leafCount == 1) ? 1 : Long.highestOneBit(leafCount - 1) << 1;
+    }
+
+    /*
+     * EFFECTS: Returns the size of a file holding a tree with the given capacity
+     */
+    private static long fileSize(long capacity) {
+        return HEADER_BYTES + 2 * capacity * NODE_BYTES;
+    }
+
+    /*
+     * EFFECTS: Maps the first size bytes of the file as CHUNK_BYTES chunks, growing the file if needed
+     */
+    private static MappedByteBuffer[] map(FileChannel channel, long size) throws IOException {
+        MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((size + CHUNK_BYTES - 1) >>> CHUNK_SHIFT)];
+        for (int i = 0; i < chunks.length; i++) {
+            long start = (long) i << CHUNK_SHIFT;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(CHUNK_BYTES, size - start));
+            chunks[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return chunks;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Writes the format version, shape and merge function to the start of the file, and the magic number
+     *          that marks the file as complete last
+     */
+    private void writeHeader() {
+        byte[] name = mergeFn.getName().getBytes(StandardCharsets.UTF_8);
+        if (name.length > NAME_BYTES) {
+            throw new IllegalArgumentException("Merge function name is too long: " + mergeFn.getName());
+        }
+        ByteBuffer header = chunks[0].duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        header.position(Integer.BYTES);
+        header.putInt(FORMAT_VERSION).putLong(leafCount).putLong(capacity).putInt(mergeFn.getModulus())
+                .putInt(name.length).put(name);
+        header.putInt(0, MAGIC);
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Writes the leaves (identity if values is null), the identity padding and every internal node
+     */
+    private void build(int[] values) {
+        int identity = mergeFn.identity();
+        if (values != null) {
+            for (int i = 0; i < values.length; i++) {
+                put(capacity + i, values[i]);
+            }
+        }
+        // A freshly sized file is zero-filled, so identity 0 needs no writes at all
+        if (identity != 0) {
+            for (long i = capacity + (values == null ? 0 : leafCount); i < 2 * capacity; i++) {
+                put(i, identity);
+            }
+        }
+        if (values != null || identity != 0) {
+            for (long i = capacity - 1; i >= TREE_ROOT_IND; i--) {
+                put(i, mergeFn.merge(get(2 * i), get(2 * i + 1)));
+            }
+        }
+    }
+
+    /*
+     * EFFECTS: Returns the node at treeInd
+     */
+    private int get(long treeInd) {
+        long offset = HEADER_BYTES + treeInd * NODE_BYTES;
+        return chunks[(int) (offset >>> CHUNK_SHIFT)].getInt((int) (offset & (CHUNK_BYTES - 1)));
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Sets the node at treeInd to val
+     */
+    private void put(long treeInd, int val) {
+        long offset = HEADER_BYTES + treeInd * NODE_BYTES;
+        chunks[(int) (offset >>> CHUNK_SHIFT)].putInt((int) (offset & (CHUNK_BYTES - 1)), val);
+    }
+}
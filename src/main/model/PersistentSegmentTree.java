@@ -0,0 +1,194 @@
+package model;
+
+import model.merge.MergeFunction;
+
+import java.util.ArrayList;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/*
+ * Represents a persistent (versioned) SegmentTree: every update creates a new version that shares all unchanged
+ * subtrees with the version it was made from, so each update costs O(log n) new nodes and every past version
+ * can still be queried
+ *
+ * Versions are numbered from 0 (the tree as built) in the order they are created. Nodes are immutable objects
+ * reachable only from the version roots, so releasing a version lets the garbage collector reclaim every node
+ * no other live version shares.
+ */
+public class PersistentSegmentTree {
+    private final ArrayList<Node> roots = new ArrayList<>(); // Tracks the root of every version, null if released
+    private final MergeFunction mergeFn; // Tracks the merge function being used
+    private final int leafCount; // Tracks the number of leaves in every version
+
+    /*
+     * REQUIRES: values.length >= 1
+     * MODIFIES: this
+     * EFFECTS: Builds version 0 of the tree from the given leaf values with the given merge function
+     */
+    public PersistentSegmentTree(int[] values, MergeFunction mergeFn) {
+        this.mergeFn = mergeFn;
+        leafCount = values.length;
+        roots.add(build(values, 0, leafCount - 1));
+
+        EventLog.getInstance().logEvent(new Event("Generated new persistent segment tree with " + leafCount
+                + " values"));
+    }
+
+    /*
+     * REQUIRES: Valid index between 0 and getLeafCount()-1
+     * MODIFIES: this
+     * EFFECTS: Creates a new version from the latest version with the leaf set to val and returns its number
+     */
+    public int updateVal(int valInd, int val) {
+        return updateVal(getLatestVersion(), valInd, val);
+    }
+
+    /*
+     * REQUIRES: Valid index between 0 and getLeafCount()-1
+     * MODIFIES: this
+     * EFFECTS: Creates a new version from the given version with the leaf set to val and returns its number;
+     *          throws IllegalArgumentException if the given version has been released
+     */
+    public int updateVal(int version, int valInd, int val) {
+        Node root = update(getRoot(version), 0, leafCount - 1, valInd, val);
+        roots.add(root);
+
+        int newVersion = roots.size() - 1;
+        EventLog.getInstance().logEvent(new Event("Created segment tree version " + newVersion + " from version "
+                + version + " by updating node index - " + valInd + " to value - " + val));
+        return newVersion;
+    }
+
+    /*
+     * REQUIRES: Valid increasing range between 0 and getLeafCount()-1
+     * EFFECTS: Returns the sum/product of the range l to r in the given version;
+     *          throws IllegalArgumentException if the given version has been released
+     */
+    public int rangeSumProduct(int version, int l, int r) {
+        return mergeFn.canonical(computeRange(getRoot(version), 0, leafCount - 1, l, r));
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Drops the given version so that nodes only it references can be garbage-collected;
+     *          the latest version cannot be released
+     */
+    public void releaseVersion(int version) {
+        if (version == getLatestVersion()) {
+            throw new IllegalArgumentException("The latest version cannot be released");
+        }
+        getRoot(version);
+        roots.set(version, null);
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Drops every version older than the given version
+     */
+    public void releaseVersionsBefore(int version) {
+        for (int v = 0; v < min(version, getLatestVersion()); v++) {
+            roots.set(v, null);
+        }
+    }
+
+    /*
+     * EFFECTS: Returns true if the given version exists and has not been released
+     */
+    public boolean isAvailable(int version) {
+        return version >= 0 && version < roots.size() && roots.get(version) != null;
+    }
+
+    /*
+     * EFFECTS: Returns the number of the most recently created version
+     */
+    public int getLatestVersion() {
+        return roots.size() - 1;
+    }
+
+    /*
+     * EFFECTS: Returns the number of leaves in every version
+     */
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    /*
+     * EFFECTS: Returns the merge function being used
+     */
+    public MergeFunction getMergeFn() {
+        return mergeFn;
+    }
+
+    /*
+     * EFFECTS: Returns the root of the given version; throws IllegalArgumentException if it is not available
+     */
+    private Node getRoot(int version) {
+        if (!isAvailable(version)) {
+            throw new IllegalArgumentException("Segment tree version " + version + " is not available");
+        }
+        return roots.get(version);
+    }
+
+    /*
+     * REQUIRES: Valid range (l r) between 0 and leafCount-1
+     * EFFECTS: Builds and returns the subtree over the leaves l to r
+     */
+    private Node build(int[] values, int l, int r) {
+        if (l == r) {
+            return new Node(values[l], null, null);
+        }
+        int mid = l + (r - l) / 2;
+        Node left = build(values, l, mid);
+        Node right = build(values, mid + 1, r);
+        return new Node(mergeFn.merge(left.val, right.val), left, right);
+    }
+
+    /*
+     * REQUIRES: node covers the leaves l to r; updateInd between l and r
+     * EFFECTS: Returns a copy of the path from node to the updated leaf, sharing every other subtree
+     */
+    private Node update(Node node, int l, int r, int updateInd, int val) {
+        if (l == r) {
+            return new Node(val, null, null);
+        }
+        int mid = l + (r - l) / 2;
+        Node left = node.left;
+        Node right = node.right;
+        if (updateInd <= mid) {
+            left = update(left, l, mid, updateInd, val);
+        } else {
+            right = update(right, mid + 1, r, updateInd, val);
+        }
+        return new Node(mergeFn.merge(left.val, right.val), left, right);
+    }
+
+    /*
+     * REQUIRES: node covers the leaves l to r
+     * EFFECTS: Returns the merge of the leaves targetL to targetR below node
+     */
+    private int computeRange(Node node, int l, int r, int targetL, int targetR) {
+        if (targetL > targetR) {
+            return mergeFn.identity();
+        }
+        if (targetL == l && targetR == r) {
+            return node.val;
+        }
+        int mid = l + (r - l) / 2;
+        return mergeFn.merge(computeRange(node.left, l, mid, targetL, min(mid, targetR)),
+                computeRange(node.right, mid + 1, r, max(mid + 1, targetL), targetR));
+    }
+
+    // Represents an immutable node shared between every version that did not change its subtree
+    private static final class Node {
+        private final int val;
+        private final Node left;
+        private final Node right;
+
+        Node(int val, Node left, Node right) {
+            this.val = val;
+            this.left = left;
+            this.right = right;
+        }
+    }
+}
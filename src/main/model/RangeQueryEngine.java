@@ -0,0 +1,34 @@
+package model;
+
+import model.merge.MergeFunction;
+
+/*
+ * Represents a structure that answers range merge queries over a fixed number of leaves under point updates;
+ * engines are built from the leaf values by their constructors or by RangeQueryEngines.build
+ */
+public interface RangeQueryEngine {
+
+    /*
+     * REQUIRES: Valid index between 0 and getLeafCount()-1
+     * MODIFIES: this
+     * EFFECTS: Sets the leaf with the specified index to val
+     */
+    void updateVal(int valInd, int val);
+
+    /*
+     * REQUIRES: Valid increasing range between 0 and getLeafCount()-1
+     * EFFECTS: Returns the merge of the leaves in the range l to r in the canonical representation of the merge
+     *          function (see MergeFunction.canonical), so every engine gives the same answer
+     */
+    int rangeSumProduct(int l, int r);
+
+    /*
+     * EFFECTS: Returns the number of leaves
+     */
+    int getLeafCount();
+
+    /*
+     * EFFECTS: Returns the merge function being used
+     */
+    MergeFunction getMergeFn();
+}
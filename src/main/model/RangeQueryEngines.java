@@ -0,0 +1,46 @@
+package model;
+
+import model.merge.MergeFunction;
+
+// Represents the factory that picks the cheapest RangeQueryEngine for a merge function
+public final class RangeQueryEngines {
+
+    // Represents the engines that can be asked for explicitly
+    public enum EngineType {
+        AUTO, SEGMENT_TREE, COMPACT_SEGMENT_TREE, FENWICK_TREE, WIDE_SEGMENT_TREE
+    }
+
+    private RangeQueryEngines() {
+    }
+
+    /*
+     * REQUIRES: values.length >= 1
+     * EFFECTS: Returns a FenwickTree over the values if the merge function is invertible (Addition, Xor),
+     *          otherwise a SegmentTree (Product, Min, Max, ...)
+     */
+    public static RangeQueryEngine build(int[] values, MergeFunction mergeFn) {
+        if (mergeFn.isInvertible()) {
+            return new FenwickTree(values, mergeFn);
+        }
+        return new SegmentTree(values, mergeFn);
+    }
+
+    /*
+     * REQUIRES: values.length >= 1; mergeFn.isInvertible() for FENWICK_TREE
+     * EFFECTS: Returns the engine of the given type over the values, choosing as build(values, mergeFn) for AUTO
+     */
+    public static RangeQueryEngine build(int[] values, MergeFunction mergeFn, EngineType type) {
+        switch (type) {
+            case SEGMENT_TREE:
+                return new SegmentTree(values, mergeFn);
+            case COMPACT_SEGMENT_TREE:
+                return new CompactSegmentTree(values, mergeFn);
+            case FENWICK_TREE:
+                return new FenwickTree(values, mergeFn);
+            case WIDE_SEGMENT_TREE:
+                return new WideSegmentTree(values, mergeFn);
+            default:
+                return build(values, mergeFn);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package model;
+
+// Represents the sum, product, min, max and count of a range, filled in place by SegmentTree.rangeStats so that
+// one holder can be reused for every query
+public class RangeStats {
+    private int sum;
+    private int product;
+    private int min;
+    private int max;
+    private int count;
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Replaces every statistic
+     */
+    void set(int sum, int product, int min, int max, int count) {
+        this.sum = sum;
+        this.product = product;
+        this.min = min;
+        this.max = max;
+        this.count = count;
+    }
+
+    public int getSum() {
+        return sum;
+    }
+
+    public int getProduct() {
+        return product;
+    }
+
+    public int getMin() {
+        return min;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    public int getCount() {
+        return count;
+    }
+}
@@ -1,9 +1,20 @@
 package model;
 
+import model.merge.MaxMerge;
+import model.merge.MergeFunction;
+import model.merge.MinMerge;
+import model.merge.ProductMerge;
+import model.merge.SumMerge;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
 
 import static java.lang.Math.max;
 import static java.lang.Math.min;
@@ -11,83 +22,562 @@ import static resources.TreeConfig.*;
 
 /*
  * Represents a SegmentTree with customizable merge function
- * NOTE: All values are Modded with MOD specified in treeConfig to handle overflow
+ * NOTE: Addition and Product values are Modded with a prime (MOD specified in treeConfig by default) to handle
+ *       overflow; their query results are always in [0, modulus), also for negative leaves
+ *
+ * Node values are stored per instance in a primitive array sized from the input: the tree is padded up to
+ * capacity (the next power of 2 of the leaf count) and laid out from TREE_ROOT_IND with children at 2i and 2i+1,
+ * so the leaf with index i lives at capacity + i. Padding leaves hold the identity of the current merge function.
+ *
+ * Range updates are applied lazily: a fully covered node is updated in place and records a tag that is pushed to
+ * its children only when a later update has to look below it. Queries never push: they fold the pending tags
+ * they pass on the way down into the values they read.
+ *
+ * Tracing is off by default, in which case queries do not write to the tree at all. When a TreeTrace is set, every
+ * update and single range query records the nodes it visits into it for the renderers.
+ *
+ * Multi-aggregate mode is entered explicitly with addAggregate: every kept merge function has its own node array
+ * and lazy tags (struct of arrays), all updates are applied to each of them, and the fields tree, lazyKind, lazyVal,
+ * tagsPending and mergeFn refer to the active one. Switching to a kept merge function is then O(1) and any kept
+ * aggregate can be queried without switching, at the cost of one extra update walk per aggregate. Aggregates are
+ * keyed by merge function name and modulus; the current merge function need not be kept, in which case it has
+ * a slot of its own that is only maintained while it is current and is recomputed on switches like in the
+ * single-aggregate mode. setMergeFn and flipMergeFn never add, drop or rebuild a kept aggregate.
  */
-public class SegmentTree {
-    private static final TreeNode[] tree = new TreeNode[MAX_TREE_NODES]; // Holds computation result of subtree
-    private String curMergeFn = DEFAULT_MERGE_FN; // Tracks the current merge function being used
-    private ArrayList<TreeNode> leaves; // Tracks the current state of the leaves of the tree
+public class SegmentTree implements RangeQueryEngine {
+    private static final byte NO_TAG = 0;
+    private static final byte ADD_TAG = 1;
+    private static final byte ASSIGN_TAG = 2;
+    private static final long NO_PENDING = 0L;
+    private static final String[] RANGE_STATS_AGGREGATES = {SumMerge.NAME, ProductMerge.NAME, MinMerge.NAME,
+            MaxMerge.NAME};
+    private static final int SUM_STAT = 0;
+    private static final int PRODUCT_STAT = 1;
+    private static final int MIN_STAT = 2;
+    private static final int MAX_STAT = 3;
+
+    private int[] tree; // Holds computation result of subtree
+    private byte[] lazyKind; // Tracks the pending range update of every internal node, null until one is made
+    private int[] lazyVal; // Tracks the operand of the pending range update of every internal node
+    private boolean tagsPending; // Tracks whether a range update has been made since the tags were last flushed
+    private int leafCount; // Tracks the number of leaves in the tree
+    private int capacity; // Tracks the number of leaf slots in the tree, always a power of 2
+    private MergeFunction mergeFn; // Tracks the current merge function being used
+    private boolean bottomUp = true; // Tracks whether updates and queries walk the tree iteratively from the leaves
+    private final boolean parallelBuild; // Tracks whether large subtrees may be built in parallel
+    private TreeTrace trace; // Records the nodes visited by updates and queries for the renderers, null if off
+    private SegmentTreeListener listener; // Notified of every change to the leaves or merge function, null if none
+    private BitSet dirtyLeaves; // Tracks the leaves changed since they were last cleared, null until one changes
+    private MergeFunction[] aggregateFns; // Holds the merge function of every kept aggregate, null if only one
+    private int[][] aggregateTrees; // Holds the node values of every kept aggregate
+    private byte[][] aggregateLazyKinds; // Holds the pending range update kinds of every kept aggregate
+    private int[][] aggregateLazyVals; // Holds the pending range update operands of every kept aggregate
+    private boolean[] aggregateTagsPending; // Tracks tagsPending of every kept aggregate
+    private boolean[] aggregateKept; // Tracks which slots were kept with addAggregate; only the active one may not be
+    private int activeAggregate; // Tracks the aggregate slot the tree fields currently refer to
+    private int[] rangeStatsSlots; // Holds the kept slots of RANGE_STATS_AGGREGATES, null until keepRangeStats
 
     /*
-     * REQUIRES: arr.length() == MAX_LEAVES;
+     * REQUIRES: arr.size() >= 1
      * MODIFIES: this
      * EFFECTS: Builds a segment tree from the given array with the default merge function
      */
     public SegmentTree(ArrayList<TreeNode> arr) {
-        leaves = arr;
-        for (int i = 0; i < MAX_TREE_NODES; i++) {
-            tree[i] = new TreeNode(0);
-        }
-        build(arr, 0, MAX_LEAVES - 1, TREE_ROOT_IND, false);
+        this(toValues(arr));
+    }
+
+    /*
+     * REQUIRES: values.length >= 1
+     * MODIFIES: this
+     * EFFECTS: Builds a segment tree from the given leaf values with the default merge function
+     */
+    public SegmentTree(int[] values) {
+        this(values, MergeFunction.fromName(DEFAULT_MERGE_FN));
+    }
+
+    /*
+     * REQUIRES: values.length >= 1
+     * MODIFIES: this
+     * EFFECTS: Builds a segment tree from the given leaf values with the given merge function;
+     *          subtrees of more than PARALLEL_BUILD_THRESHOLD leaves are built in parallel
+     */
+    public SegmentTree(int[] values, MergeFunction mergeFn) {
+        this(values, mergeFn, true);
+    }
+
+    /*
+     * REQUIRES: values.length >= 1
+     * MODIFIES: this
+     * EFFECTS: Builds a segment tree from the given leaf values with the given merge function;
+     *          if parallelBuild is false every build of this tree runs sequentially on the calling thread
+     */
+    public SegmentTree(int[] values, MergeFunction mergeFn, boolean parallelBuild) {
+        this.mergeFn = mergeFn;
+        this.parallelBuild = parallelBuild;
+        leafCount = values.length;
+        capacity = (leafCount == 1) ? 1 : Integer.highestOneBit(leafCount - 1) << 1;
+        tree = new int[2 * capacity];
 
-        String nodeVals = "";
-        for (TreeNode t : arr) {
-            nodeVals += t.getVal() + " ";
+        System.arraycopy(values, 0, tree, capacity, leafCount);
+        fillPadding();
+        buildAll();
+
+        StringBuilder nodeVals = new StringBuilder();
+        for (int i = 0; i < min(leafCount, MAX_LOGGED_LEAVES); i++) {
+            nodeVals.append(values[i]).append(" ");
+        }
+        if (leafCount > MAX_LOGGED_LEAVES) {
+            nodeVals.append("...");
         }
-        EventLog.getInstance().logEvent(new Event("Generated new segment tree with " + arr.size()
+        EventLog.getInstance().logEvent(new Event("Generated new segment tree with " + leafCount
                 + " values - " + nodeVals));
     }
 
+    /*
+     * REQUIRES: leafCount >= 1; nodes holds 2 * capacity values for leafCount leaves, laid out as returned by
+     *           getNodeValues of a tree with the given merge function
+     * MODIFIES: this
+     * EFFECTS: Adopts the given node values as the tree without merging anything
+     */
+    public SegmentTree(int leafCount, int[] nodes, MergeFunction mergeFn) {
+        this.mergeFn = mergeFn;
+        this.parallelBuild = true;
+        this.leafCount = leafCount;
+        capacity = (leafCount == 1) ? 1 : Integer.highestOneBit(leafCount - 1) << 1;
+        tree = nodes;
+
+        EventLog.getInstance().logEvent(new Event("Loaded segment tree with " + leafCount + " values"));
+    }
+
     /*
      * Updates the leaf node with the given value and then recomputes the parent values until root
-     * REQUIRES: Valid index between 0 and MAX_LEAVES-1
+     * REQUIRES: Valid index between 0 and getLeafCount()-1
      * MODIFIES: this
-     * EFFECTS: tree is updated with the given value recursively from the leaf with the specified index
+     * EFFECTS: tree is updated with the given value from the leaf with the specified index
      */
     public void updateVal(int valInd, int val) {
-        update(0, MAX_LEAVES - 1, TREE_ROOT_IND, valInd, val);
+        if (bottomUp) {
+            updateBottomUp(valInd, val);
+        } else {
+            update(0, capacity - 1, TREE_ROOT_IND, valInd, val);
+        }
+        updateInactiveAggregates(() -> updateBottomUp(valInd, val));
+        markDirty(valInd, valInd);
+        if (listener != null) {
+            listener.leafUpdated(valInd, val);
+        }
         EventLog.getInstance().logEvent(new Event("Updated segment tree at node index - " + valInd
                 + " to value - " + val));
     }
 
+    /*
+     * Updates a batch of leaves and then recomputes every affected ancestor once
+     * REQUIRES: indices.length == values.length; every index between 0 and getLeafCount()-1
+     * MODIFIES: this
+     * EFFECTS: Leaf indices[i] is set to values[i] (later entries win for repeated indices); the dirty
+     *          ancestors are then recomputed level by level so each internal node is merged at most once
+     */
+    public void applyUpdates(int[] indices, int[] values) {
+        if (indices.length == 0) {
+            return;
+        }
+        applyBatch(indices, values);
+        updateInactiveAggregates(() -> applyBatch(indices, values));
+        for (int valInd : indices) {
+            markDirty(valInd, valInd);
+        }
+        if (listener != null) {
+            for (int i = 0; i < indices.length; i++) {
+                listener.leafUpdated(indices[i], values[i]);
+            }
+        }
+
+        EventLog.getInstance().logEvent(new Event("Applied a batch of " + indices.length
+                + " updates to the segment tree"));
+    }
+
+    /*
+     * REQUIRES: indices.length == values.length >= 1; every index between 0 and getLeafCount()-1
+     * MODIFIES: this
+     * EFFECTS: Sets the leaves of the active aggregate and recomputes each dirty ancestor once
+     */
+    private void applyBatch(int[] indices, int[] values) {
+        int[] dirty = new int[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            int treeInd = capacity + indices[i];
+            pushPath(treeInd);
+            if (trace != null) {
+                trace.recordCompute(treeInd);
+            }
+            tree[treeInd] = values[i];
+            dirty[i] = treeInd;
+        }
+        Arrays.sort(dirty);
+
+        int dirtyCount = dirty.length;
+        while (dirty[0] > TREE_ROOT_IND) {
+            dirtyCount = recomputeParents(dirty, dirtyCount);
+        }
+    }
+
+    /*
+     * REQUIRES: dirty holds dirtyCount distinct nodes of the same level in increasing order, below the root
+     * MODIFIES: this, dirty
+     * EFFECTS: Recomputes the parent of every dirty node once, replaces the dirty nodes with their parents in
+     *          increasing order and returns how many there are
+     */
+    private int recomputeParents(int[] dirty, int dirtyCount) {
+        int parentCount = 0;
+        for (int i = 0; i < dirtyCount; i++) {
+            int parent = dirty[i] >> 1;
+            if (parentCount == 0 || dirty[parentCount - 1] != parent) {
+                dirty[parentCount++] = parent;
+                if (trace != null) {
+                    trace.recordPath(parent);
+                }
+                tree[parent] = merge(tree[2 * parent], tree[2 * parent + 1]);
+            }
+        }
+        return parentCount;
+    }
+
+    /*
+     * Adds a leaf after the last one, growing the tree when every leaf slot is taken
+     * MODIFIES: this
+     * EFFECTS: A new leaf with the given value is placed at index getLeafCount() and its ancestors are recomputed;
+     *          growth doubles the capacity, so appends cost amortized O(log n)
+     */
+    public void append(int val) {
+        ensureCapacity(leafCount + 1);
+        int valInd = leafCount++;
+        updateBottomUp(valInd, val);
+        updateInactiveAggregates(() -> updateBottomUp(valInd, val));
+        markDirty(valInd, valInd);
+        if (listener != null) {
+            listener.leafAppended(val);
+        }
+        EventLog.getInstance().logEvent(new Event("Appended value - " + val + " to segment tree at node index - "
+                + valInd));
+    }
+
+    /*
+     * Grows the tree so that it can hold n leaves without rebuilding it
+     * MODIFIES: this
+     * EFFECTS: If n > getCapacity(), the capacity becomes the next power of 2 >= n: the current tree becomes the
+     *          leftmost subtree of the grown tree (every level is copied one level down), the new leaf slots are
+     *          padding and only the new ancestors of the old root are merged; pending range updates are kept
+     */
+    public void ensureCapacity(int n) {
+        if (n <= capacity) {
+            return;
+        }
+        int newCapacity = Integer.highestOneBit(n - 1) << 1;
+        if (aggregateFns == null) {
+            growAggregate(newCapacity);
+        } else {
+            int active = activeAggregate;
+            for (int i = 0; i < aggregateFns.length; i++) {
+                if (isMaintained(i)) {
+                    selectAggregate(i);
+                    growAggregate(newCapacity);
+                }
+            }
+            selectAggregate(active);
+        }
+        capacity = newCapacity;
+        EventLog.getInstance().logEvent(new Event("Grew segment tree to " + newCapacity + " leaf slots"));
+    }
+
+    /*
+     * Adds delta to every leaf in the given range
+     * REQUIRES: Valid increasing range between 0 and getLeafCount()-1
+     * MODIFIES: this
+     * EFFECTS: Every leaf in l to r is increased by delta (modded with the merge function's modulus); with a
+     *          merge function that supports range adds (Addition) this costs O(log n), with any other every leaf
+     *          in the range has to be recomputed
+     */
+    public void rangeAdd(int l, int r, int delta) {
+        rangeUpdate(l, r, ADD_TAG, delta);
+        updateInactiveAggregates(() -> rangeUpdate(l, r, ADD_TAG, delta));
+        markDirty(l, r);
+        if (listener != null) {
+            listener.rangeAdded(l, r, delta);
+        }
+        EventLog.getInstance().logEvent(new Event("Added " + delta + " to segment tree values in range - "
+                + l + " to " + r));
+    }
+
+    /*
+     * Sets every leaf in the given range to the given value
+     * REQUIRES: Valid increasing range between 0 and getLeafCount()-1
+     * MODIFIES: this
+     * EFFECTS: Every leaf in l to r is set to val in O(log n) for every merge function
+     */
+    public void rangeAssign(int l, int r, int val) {
+        rangeUpdate(l, r, ASSIGN_TAG, val);
+        updateInactiveAggregates(() -> rangeUpdate(l, r, ASSIGN_TAG, val));
+        markDirty(l, r);
+        if (listener != null) {
+            listener.rangeAssigned(l, r, val);
+        }
+        EventLog.getInstance().logEvent(new Event("Assigned " + val + " to segment tree values in range - "
+                + l + " to " + r));
+    }
+
     /*
      * Computes the sum/product for the given range
-     * REQUIRES: Valid increasing range between 0 and MAX_LEAVES-1
-     * EFFECTS: Computes the sum/product recursively and returns the exact sum/product based on the
-     *          merge function in the range l to r
+     * REQUIRES: Valid increasing range between 0 and getLeafCount()-1
+     * EFFECTS: Computes and returns the exact sum/product based on the merge function in the range l to r,
+     *          in the canonical representation of the merge function
      */
     public int rangeSumProduct(int l, int r) {
-        return computeRangeSumProduct(0, MAX_LEAVES - 1, TREE_ROOT_IND, l, r);
+        if (bottomUp && !tagsPending) {
+            return mergeFn.canonical(computeRangeBottomUp(l, r, trace));
+        }
+        return mergeFn.canonical(computeRangeSumProduct(0, capacity - 1, TREE_ROOT_IND, l, r, NO_PENDING, trace));
+    }
+
+    /*
+     * Computes the sum/product for a batch of ranges
+     * REQUIRES: ls.length == rs.length; every (ls[i] rs[i]) is a valid increasing range between 0 and
+     *           getLeafCount()-1
+     * EFFECTS: Returns the sum/product of every range, in the order given; the queries only read the tree
+     *          and are never traced, so batches of at least PARALLEL_QUERY_THRESHOLD ranges run in parallel
+     *          on the common ForkJoinPool
+     */
+    public int[] rangeSumProduct(int[] ls, int[] rs) {
+        int[] results = new int[ls.length];
+        IntStream queries = IntStream.range(0, ls.length);
+        if (ls.length >= PARALLEL_QUERY_THRESHOLD) {
+            queries = queries.parallel();
+        }
+        if (tagsPending) {
+            queries.forEach(i -> results[i] = mergeFn.canonical(computeRangeSumProduct(0, capacity - 1,
+                    TREE_ROOT_IND, ls[i], rs[i], NO_PENDING, null)));
+        } else {
+            queries.forEach(i -> results[i] = mergeFn.canonical(computeRangeBottomUp(ls[i], rs[i], null)));
+        }
+        return results;
+    }
+
+    /*
+     * Computes the given kept aggregate for the given range without switching to it
+     * REQUIRES: Valid increasing range between 0 and getLeafCount()-1
+     * EFFECTS: Returns the merge of the range l to r under the kept merge function with the given name; the
+     *          query is not traced; throws IllegalArgumentException if no such aggregate is kept
+     */
+    public int rangeSumProduct(int l, int r, String mergeFnName) {
+        int ind = findAggregate(mergeFnName);
+        if (ind < 0) {
+            throw new IllegalArgumentException("No '" + mergeFnName + "' aggregate is kept");
+        }
+        if (aggregateFns == null || ind == activeAggregate) {
+            return mergeFn.canonical(tagsPending
+                    ? computeRangeSumProduct(0, capacity - 1, TREE_ROOT_IND, l, r, NO_PENDING, null)
+                    : computeRangeBottomUp(l, r, null));
+        }
+        return aggregateFns[ind].canonical(computeAggregateRange(ind, l, r));
+    }
+
+    /*
+     * Computes the sum, product, min, max and count of the given range in one walk
+     * REQUIRES: Valid increasing range between 0 and getLeafCount()-1
+     * MODIFIES: stats
+     * EFFECTS: Fills stats for the range l to r and returns it without allocating or modifying the tree: the
+     *          canonical nodes of the range are visited once, in the same left-to-right order as rangeSumProduct,
+     *          and read from every aggregate, applying pending range updates on the way down. The query is not
+     *          traced; throws IllegalStateException unless keepRangeStats has been called
+     */
+    public RangeStats rangeStats(int l, int r, RangeStats stats) {
+        if (rangeStatsSlots == null) {
+            throw new IllegalStateException("Range stats need keepRangeStats to be called first");
+        }
+        stats.set(statsFn(SUM_STAT).identity(), statsFn(PRODUCT_STAT).identity(), statsFn(MIN_STAT).identity(),
+                statsFn(MAX_STAT).identity(), r - l + 1);
+        walkRangeStats(stats, TREE_ROOT_IND, 0, capacity - 1, l, r, NO_PENDING, NO_PENDING, NO_PENDING,
+                NO_PENDING);
+        return stats;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Keeps the Addition, Product, Min and Max aggregates (see addAggregate) that rangeStats reads;
+     *          every later update then walks each of them
+     */
+    public void keepRangeStats() {
+        int[] slots = new int[RANGE_STATS_AGGREGATES.length];
+        for (int stat = 0; stat < slots.length; stat++) {
+            addAggregate(MergeFunction.fromName(RANGE_STATS_AGGREGATES[stat]));
+            slots[stat] = findKeptAggregate(RANGE_STATS_AGGREGATES[stat]);
+        }
+        rangeStatsSlots = slots;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Keeps the aggregate of the given merge function up to date from now on, alongside the current one,
+     *          so later switches to it with setMergeFn/flipMergeFn are O(1) and it can be queried by name; the
+     *          current aggregate is adopted as is if it is the given one, otherwise the aggregate is built in O(n).
+     *          Does nothing if a merge function with the same name and modulus is kept already; throws
+     *          IllegalArgumentException if one with the same name and another modulus is kept
+     */
+    public void addAggregate(MergeFunction aggregateFn) {
+        ensureAggregates();
+        int ind = findAggregate(aggregateFn);
+        if (ind < 0) {
+            if (findKeptAggregate(aggregateFn.getName()) >= 0) {
+                throw new IllegalArgumentException("A '" + aggregateFn.getName()
+                        + "' aggregate with another modulus is kept");
+            }
+            ind = buildAggregate(aggregateFn);
+        }
+        aggregateKept[ind] = true;
+
+        EventLog.getInstance().logEvent(new Event("Keeping '" + aggregateFn.getName()
+                + "' aggregate alongside '" + getCurMergeFn() + "'"));
     }
 
     /*
-     * REQUIRES: Valid index between 0 and MAX_TREE_NODES-1
-     * EFFECTS: Returns the tree node at the specified index
+     * EFFECTS: Returns the names of the current merge function and of the kept aggregates, the current one first
+     */
+    public List<String> getAggregates() {
+        List<String> names = new ArrayList<>();
+        names.add(getCurMergeFn());
+        if (aggregateFns != null) {
+            for (int i = 0; i < aggregateFns.length; i++) {
+                if (aggregateKept[i] && i != activeAggregate) {
+                    names.add(aggregateFns[i].getName());
+                }
+            }
+        }
+        return names;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Selects between the iterative bottom-up walk (default) and the recursive top-down walk
+     *          for updates and range queries; both produce the same values. Queries made while range
+     *          updates are pending always walk top-down
+     */
+    public void setBottomUp(boolean bottomUp) {
+        this.bottomUp = bottomUp;
+    }
+
+    /*
+     * EFFECTS: Returns true if updates and queries walk the tree iteratively from the leaves
+     */
+    public boolean isBottomUp() {
+        return bottomUp;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Records the nodes visited by later updates and single range queries into the given trace;
+     *          a null trace turns tracing off
+     */
+    public void setTrace(TreeTrace trace) {
+        this.trace = trace;
+    }
+
+    /*
+     * EFFECTS: Returns the trace the tree records into, or null if tracing is off
+     */
+    public TreeTrace getTrace() {
+        return trace;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Notifies the given listener of every later change to the leaves or the merge function;
+     *          a null listener stops notifications
+     */
+    public void setListener(SegmentTreeListener listener) {
+        this.listener = listener;
+    }
+
+    /*
+     * EFFECTS: Returns the listener notified of changes to the tree, or null if there is none
+     */
+    public SegmentTreeListener getListener() {
+        return listener;
+    }
+
+    /*
+     * REQUIRES: Valid index between 1 and 2 * getCapacity() - 1
+     * EFFECTS: Returns a copy of the tree node at the specified index
      */
     public TreeNode getTreeNodeByInd(int treeInd) {
-        return tree[treeInd];
+        return new TreeNode(readNode(treeInd));
     }
 
     /*
      * EFFECTS: Repeats the current merge function
      */
     public String getCurMergeFn() {
-        return curMergeFn;
+        return mergeFn.getName();
+    }
+
+    /*
+     * EFFECTS: Returns the current merge function
+     */
+    public MergeFunction getMergeFn() {
+        return mergeFn;
+    }
+
+    /*
+     * EFFECTS: Returns the number of leaves in the tree
+     */
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    /*
+     * EFFECTS: Returns the number of leaf slots in the tree (a power of 2 that is >= getLeafCount())
+     */
+    public int getCapacity() {
+        return capacity;
     }
 
     /*
      * Updates the function being used to merge 2 child nodes
      * MODIFIES: this
-     * EFFECTS: Toggles the merge function between Addition and Multiplication;
-     *          Tree is recomputed with the updated merge function
+     * EFFECTS: Toggles the merge function between Addition and Multiplication (any other merge function
+     *          is switched to Addition) as setMergeFn does, so the toggle is O(1) if the target is kept
      */
     public String flipMergeFn() {
-        String prevMergeFn = curMergeFn;
-        curMergeFn = (curMergeFn.equals("Addition") ? "Product" : "Addition");
-        build(new ArrayList<>(), 0, MAX_LEAVES - 1, TREE_ROOT_IND, true);
+        MergeFunction target = mergeFn.getName().equals(SumMerge.NAME) ? new ProductMerge() : new SumMerge();
+        setMergeFn(target);
+        return getCurMergeFn();
+    }
+
+    /*
+     * Updates the function being used to merge 2 child nodes
+     * MODIFIES: this
+     * EFFECTS: Switches to the kept aggregate with the same name and modulus in O(1) if there is one, otherwise
+     *          the tree is recomputed with the given merge function; kept aggregates are left as they are, and a
+     *          current merge function that is not kept stops being maintained once it is switched away from
+     */
+    public void setMergeFn(MergeFunction newMergeFn) {
+        String prevMergeFn = getCurMergeFn();
+        int kept = findAggregate(newMergeFn);
+        if (kept >= 0) {
+            switchAggregate(kept);
+        } else if (aggregateFns != null && aggregateKept[activeAggregate]) {
+            switchAggregate(buildAggregate(newMergeFn));
+        } else {
+            pushAll();
+            mergeFn = newMergeFn;
+            fillPadding();
+            buildAll();
+            if (aggregateFns != null) {
+                aggregateFns[activeAggregate] = mergeFn;
+            }
+        }
+        if (listener != null) {
+            listener.mergeFnChanged(mergeFn);
+        }
         EventLog.getInstance().logEvent(new Event("Updated merge function from '" + prevMergeFn
-                + "' to '" + curMergeFn + "'"));
-        return curMergeFn;
+                + "' to '" + getCurMergeFn() + "'"));
     }
 
     /*
@@ -102,108 +592,774 @@ public class SegmentTree {
     }
 
     /*
-     * REQUIRES: Valid index between 0 and MAX_LEAVES-1
-     * EFFECTS: Returns the leaf node at the specified index
+     * REQUIRES: Valid index between 0 and getLeafCount()-1
+     * EFFECTS: Returns a copy of the leaf node at the specified index
      */
     public TreeNode getLeaf(int ind) {
-        return leaves.get(ind);
+        return new TreeNode(readNode(capacity + ind));
+    }
+
+    /*
+     * REQUIRES: getMergeFn().isIdempotent()
+     * EFFECTS: Returns a read-only SparseTable over the current leaf values with O(1) range queries
+     */
+    public SparseTable freeze() {
+        return new SparseTable(getLeafValues(), mergeFn);
+    }
+
+    /*
+     * EFFECTS: Returns the exact values of every leaf, in order, including pending range updates
+     */
+    public int[] getLeafValues() {
+        int[] values = new int[leafCount];
+        for (int i = 0; i < leafCount; i++) {
+            values[i] = readNode(capacity + i);
+        }
+        return values;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Pushes every pending range update to the leaves and returns a copy of all 2 * getCapacity() node
+     *          values of the current merge function, indexed like the tree (index 0 is unused)
+     */
+    public int[] getNodeValues() {
+        pushAll();
+        return Arrays.copyOf(tree, tree.length);
+    }
+
+    /*
+     * EFFECTS: Returns the indices of the leaves changed since the tree was built or its dirty leaves were last
+     *          cleared, in increasing order
+     */
+    public int[] getDirtyLeaves() {
+        return (dirtyLeaves == null) ? new int[0] : dirtyLeaves.stream().toArray();
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Forgets which leaves were changed, usually once the base or a delta of a delta chain was written
+     */
+    public void clearDirtyLeaves() {
+        if (dirtyLeaves != null) {
+            dirtyLeaves.clear();
+        }
+    }
+
+    /*
+     * Builds/rebuilds the tree from the leaves
+     * MODIFIES: this
+     * EFFECTS: Computes all node values, forking the left and right subtrees into tasks on the common
+     *          ForkJoinPool while they cover more than PARALLEL_BUILD_THRESHOLD leaves
+     */
+    private void buildAll() {
+        if (parallelBuild && capacity > PARALLEL_BUILD_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(new BuildTask(TREE_ROOT_IND, 0, capacity - 1));
+        } else {
+            build(TREE_ROOT_IND, 0, capacity - 1);
+        }
     }
 
     /*
      * Builds/rebuilds the tree from the leaves
-     * REQUIRES: Valid range (l r) between 0 and MAX_LEAVES-1;
-     *           treeInd between 0 and MAX_TREE_NODES-1
+     * REQUIRES: Valid range (l r) between 0 and capacity-1;
+     *           treeInd between 1 and 2 * capacity - 1
      * MODIFIES: this
-     * EFFECTS: If rebuild is disabled then the leaves are updated from the given array;
-     *          Computes all node values by merging their children with the specified merge function
+     * EFFECTS: Computes all node values by merging their children with the specified merge function
      */
-    private void build(ArrayList<TreeNode> arr, int l, int r, int treeInd, boolean rebuild) {
+    private void build(int treeInd, int l, int r) {
         if (l == r) {
-            if (!rebuild) {
-                tree[treeInd] = new TreeNode(arr.get(l)); //Overwrite current leaf with an exact copy of the new leaf
-            }
             return;
         }
         int mid = l + (r - l) / 2;
-        build(arr, l, mid, 2 * treeInd, rebuild);
-        build(arr, mid + 1, r, 2 * treeInd + 1, rebuild);
-        tree[treeInd].setVal(merge(tree[2 * treeInd], tree[2 * treeInd + 1]));
+        build(2 * treeInd, l, mid);
+        build(2 * treeInd + 1, mid + 1, r);
+        tree[treeInd] = merge(tree[2 * treeInd], tree[2 * treeInd + 1]);
     }
 
     /*
      * Updates the leaf node with the given value and then recomputes the parent values until root
-     * REQUIRES: Valid range (l r) between 0 and MAX_LEAVES-1;
-     *           treeInd between 0 and MAX_TREE_NODES-1;
-     *           updateInd between 0 and MAX_LEAVES-1;
+     * REQUIRES: Valid range (l r) between 0 and capacity-1;
+     *           treeInd between 1 and 2 * capacity - 1;
+     *           updateInd between 0 and leafCount-1;
      * MODIFIES: this
      * EFFECTS: tree is updated with the given value recursively from the leaf with the specified index
      */
     private void update(int l, int r, int treeInd, int updateInd, int val) {
-        tree[treeInd].highlightPath();
-
         if (l == r) {
-            tree[treeInd].highlightCompute();
-            tree[treeInd].setVal(val);
-            leaves.get(updateInd).setVal(val); // TODO: Encapsulate this nicer with setter for val
+            if (trace != null) {
+                trace.recordCompute(treeInd);
+            }
+            tree[treeInd] = val;
             return;
         }
+        if (trace != null) {
+            trace.recordPath(treeInd);
+        }
+        push(treeInd, r - l + 1);
         int mid = l + (r - l) / 2;
         if (updateInd <= mid) {
             update(l, mid, 2 * treeInd, updateInd, val);
         } else {
             update(mid + 1, r, 2 * treeInd + 1, updateInd, val);
         }
-        tree[treeInd].setVal(merge(tree[2 * treeInd], tree[2 * treeInd + 1]));
+        tree[treeInd] = merge(tree[2 * treeInd], tree[2 * treeInd + 1]);
+    }
+
+    /*
+     * Updates the leaf node with the given value and then walks the parents up to the root
+     * REQUIRES: updateInd between 0 and leafCount-1
+     * MODIFIES: this
+     * EFFECTS: leaf at capacity + updateInd is set to val and every ancestor is recomputed from its children
+     */
+    private void updateBottomUp(int updateInd, int val) {
+        int treeInd = capacity + updateInd;
+        pushPath(treeInd);
+        if (trace != null) {
+            trace.recordCompute(treeInd);
+        }
+        tree[treeInd] = val;
+
+        for (treeInd >>= 1; treeInd >= TREE_ROOT_IND; treeInd >>= 1) {
+            if (trace != null) {
+                trace.recordPath(treeInd);
+            }
+            tree[treeInd] = merge(tree[2 * treeInd], tree[2 * treeInd + 1]);
+        }
+    }
+
+    /*
+     * Computes the sum/product for the given range by walking both range borders up from the leaves
+     * REQUIRES: Valid increasing range(targetL targetR) between 0 and leafCount-1; no pending range updates
+     * EFFECTS: Merges the same canonical nodes as computeRangeSumProduct, keeping left-to-right order;
+     *          an empty side is skipped instead of being merged with the identity so single nodes are
+     *          returned exactly as stored; merged nodes are recorded into recorder unless it is null
+     */
+    private int computeRangeBottomUp(int targetL, int targetR, TreeTrace recorder) {
+        int resL = 0;
+        int resR = 0;
+        boolean hasL = false;
+        boolean hasR = false;
+
+        for (int l = targetL + capacity, r = targetR + capacity + 1; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) == 1) {
+                recordCompute(recorder, l);
+                resL = hasL ? merge(resL, tree[l]) : tree[l];
+                hasL = true;
+                l++;
+            }
+            if ((r & 1) == 1) {
+                r--;
+                recordCompute(recorder, r);
+                resR = hasR ? merge(tree[r], resR) : tree[r];
+                hasR = true;
+            }
+        }
+
+        if (!hasL) {
+            return hasR ? resR : identity();
+        }
+        return hasR ? merge(resL, resR) : resL;
     }
 
     /*
      * Computes the sum/product for the given range
-     * REQUIRES: Valid range (l r) between 0 and MAX_LEAVES-1;
-     *           treeInd between 0 and MAX_TREE_NODES-1;
-     *           Valid increasing range(targetL targetR) between 0 and MAX_LEAVES-1
+     * REQUIRES: Valid range (l r) between 0 and capacity-1;
+     *           treeInd between 1 and 2 * capacity - 1;
+     *           Valid increasing range(targetL targetR) between 0 and leafCount-1;
+     *           pending is the composition of the tags of every ancestor of treeInd
      * EFFECTS: Computes the sum/product recursively and returns the exact sum/product based on the
-     *          merge function in the range l to r
+     *          merge function in the range l to r; pending tags are applied to the values read instead of
+     *          being pushed, so the tree is not modified; visited nodes are recorded into recorder unless
+     *          it is null
      */
-    private int computeRangeSumProduct(int l, int r, int treeInd, int targetL, int targetR) {
+    private int computeRangeSumProduct(int l, int r, int treeInd, int targetL, int targetR, long pending,
+                                       TreeTrace recorder) {
         if (targetL > targetR) {
-            if (curMergeFn.equals("Addition")) {
-                return 0;
-            } else {
-                return 1;
+            return identity();
+        }
+
+        if (targetL == l && targetR == r) {
+            recordCompute(recorder, treeInd);
+            return applyPending(mergeFn, tree[treeInd], r - l + 1, pending);
+        }
+        if (recorder != null) {
+            recorder.recordPath(treeInd);
+        }
+
+        long childPending = composeTags(mergeFn, tagAt(lazyKind, lazyVal, treeInd), pending);
+        int mid = l + (r - l) / 2;
+
+        return merge(computeRangeSumProduct(l, mid, 2 * treeInd, targetL, min(mid, targetR), childPending,
+                        recorder),
+                computeRangeSumProduct(mid + 1, r, 2 * treeInd + 1, max(mid + 1, targetL), targetR,
+                        childPending, recorder));
+    }
+
+    /*
+     * EFFECTS: Records the node as merged into a query result into recorder unless it is null
+     */
+    private static void recordCompute(TreeTrace recorder, int treeInd) {
+        if (recorder != null) {
+            recorder.recordCompute(treeInd);
+        }
+    }
+
+    /*
+     * REQUIRES: treeInd between 1 and 2 * capacity - 1
+     * EFFECTS: Returns the exact value of the node, applying the pending tags of its ancestors without
+     *          pushing them
+     */
+    private int readNode(int treeInd) {
+        long pending = NO_PENDING;
+        if (tagsPending) {
+            for (int shift = 31 - Integer.numberOfLeadingZeros(treeInd); shift > 0; shift--) {
+                pending = composeTags(mergeFn, tagAt(lazyKind, lazyVal, treeInd >> shift), pending);
             }
         }
+        return applyPending(mergeFn, tree[treeInd], nodeLen(treeInd), pending);
+    }
 
-        tree[treeInd].highlightPath();
+    /*
+     * Computes the given inactive aggregate for the given range from its own arrays
+     * REQUIRES: Valid increasing range(targetL targetR) between 0 and leafCount-1;
+     *           ind is a kept aggregate other than the active one
+     * EFFECTS: Merges the same canonical nodes as computeRangeBottomUp, in the same order, under the merge
+     *          function of the aggregate; only reads the arrays of the aggregate, so the fields of the active
+     *          aggregate are left untouched
+     */
+    private int computeAggregateRange(int ind, int targetL, int targetR) {
+        MergeFunction fn = aggregateFns[ind];
+        int resL = 0;
+        int resR = 0;
+        boolean hasL = false;
+        boolean hasR = false;
 
-        if (targetL == l && targetR == r) {
-            tree[treeInd].highlightCompute();
-            return tree[treeInd].getVal();
+        for (int l = targetL + capacity, r = targetR + capacity + 1; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) == 1) {
+                int node = readAggregateNode(ind, l++);
+                resL = hasL ? fn.merge(resL, node) : node;
+                hasL = true;
+            }
+            if ((r & 1) == 1) {
+                int node = readAggregateNode(ind, --r);
+                resR = hasR ? fn.merge(node, resR) : node;
+                hasR = true;
+            }
+        }
+
+        if (!hasL) {
+            return hasR ? resR : fn.identity();
+        }
+        return hasR ? fn.merge(resL, resR) : resL;
+    }
+
+    /*
+     * REQUIRES: treeInd between 1 and 2 * capacity - 1; ind is a kept aggregate other than the active one
+     * EFFECTS: Returns the exact value of the node in the given aggregate, applying the pending tags of its
+     *          ancestors as readNode does
+     */
+    private int readAggregateNode(int ind, int treeInd) {
+        MergeFunction fn = aggregateFns[ind];
+        byte[] kinds = aggregateLazyKinds[ind];
+        int[] vals = aggregateLazyVals[ind];
+        long pending = NO_PENDING;
+        if (aggregateTagsPending[ind]) {
+            for (int shift = 31 - Integer.numberOfLeadingZeros(treeInd); shift > 0; shift--) {
+                pending = composeTags(fn, tagAt(kinds, vals, treeInd >> shift), pending);
+            }
+        }
+        return applyPending(fn, aggregateTrees[ind][treeInd], nodeLen(treeInd), pending);
+    }
+
+    /*
+     * Applies a range update to every leaf of the subtree that falls in the target range
+     * REQUIRES: Valid range (l r) between 0 and capacity-1;
+     *           treeInd between 1 and 2 * capacity - 1;
+     *           Valid increasing range(targetL targetR) between 0 and leafCount-1
+     * MODIFIES: this
+     * EFFECTS: Fully covered nodes are updated in place and tagged; an add that the merge function cannot
+     *          fold into a node value is carried down to the leaves of the range
+     */
+    private void rangeApply(int treeInd, int l, int r, int targetL, int targetR, byte kind, int val) {
+        if (targetR < l || r < targetL) {
+            return;
+        }
+        if (targetL <= l && r <= targetR && (l == r || kind == ASSIGN_TAG || mergeFn.supportsRangeAdd())) {
+            applyTag(treeInd, r - l + 1, kind, val);
+            return;
         }
 
+        push(treeInd, r - l + 1);
         int mid = l + (r - l) / 2;
+        rangeApply(2 * treeInd, l, mid, targetL, targetR, kind, val);
+        rangeApply(2 * treeInd + 1, mid + 1, r, targetL, targetR, kind, val);
+        tree[treeInd] = merge(tree[2 * treeInd], tree[2 * treeInd + 1]);
+    }
 
-        return merge(computeRangeSumProduct(l, mid, 2 * treeInd, targetL, min(mid, targetR)),
-                computeRangeSumProduct(mid + 1, r, 2 * treeInd + 1, max(mid + 1, targetL), targetR));
+    /*
+     * REQUIRES: treeInd covers len leaves; kind is ADD_TAG or ASSIGN_TAG;
+     *           an ADD_TAG on an internal node requires a merge function that supports range adds
+     * MODIFIES: this
+     * EFFECTS: Updates the value of the node as if the update had been made to each of its leaves and
+     *          composes the update with the pending tag of the node
+     */
+    private void applyTag(int treeInd, int len, byte kind, int val) {
+        tree[treeInd] = applyToValue(mergeFn, tree[treeInd], len, kind, val);
+
+        if (treeInd >= capacity) {
+            return;
+        }
+        if (kind == ASSIGN_TAG || lazyKind[treeInd] == NO_TAG) {
+            lazyKind[treeInd] = kind;
+            lazyVal[treeInd] = val;
+        } else {
+            lazyVal[treeInd] = mergeFn.addToLeaf(lazyVal[treeInd], val);
+        }
     }
 
     /*
-     * EFFECTS: Merges 2 values based on the current merge function;
-     *          Merge process includes modding with a large prime to handle overflow
+     * REQUIRES: value is the merge of len leaves; kind is ADD_TAG or ASSIGN_TAG;
+     *           an ADD_TAG with len > 1 requires a merge function that supports range adds
+     * EFFECTS: Returns the merge of the same leaves under fn after the update is made to each of them
      */
-    private int merge(int left, int right) {
-        if (curMergeFn.equals("Addition")) {
-            return (int) ((0L + left + right) % MOD);
+    private static int applyToValue(MergeFunction fn, int value, int len, byte kind, int val) {
+        if (kind == ASSIGN_TAG) {
+            return fn.repeat(val, len);
+        } else if (len == 1) {
+            return fn.addToLeaf(value, val);
         } else {
-            return (int) ((1L * left * right) % MOD);
+            return fn.addToAll(value, val, len);
+        }
+    }
+
+    /*
+     * REQUIRES: value is the merge of len leaves; pending is a packed tag
+     * EFFECTS: Returns the value under fn after the packed tag is applied to it
+     */
+    private static int applyPending(MergeFunction fn, int value, int len, long pending) {
+        byte kind = (byte) (pending >>> 32);
+        return kind == NO_TAG ? value : applyToValue(fn, value, len, kind, (int) pending);
+    }
+
+    /*
+     * EFFECTS: Returns the pending tag of the node in the given lazy tag arrays packed as (kind << 32 | operand),
+     *          or NO_PENDING
+     */
+    private static long tagAt(byte[] kinds, int[] vals, int treeInd) {
+        if (kinds == null || treeInd >= kinds.length || kinds[treeInd] == NO_TAG) {
+            return NO_PENDING;
+        }
+        return ((long) kinds[treeInd] << 32) | (vals[treeInd] & 0xFFFFFFFFL);
+    }
+
+    /*
+     * EFFECTS: Returns the packed tag equivalent to applying first and then second, composed the same way
+     *          applyTag composes a new tag with the pending tag of a node
+     */
+    private static long composeTags(MergeFunction fn, long first, long second) {
+        byte secondKind = (byte) (second >>> 32);
+        if (secondKind == NO_TAG) {
+            return first;
+        }
+        if (secondKind == ASSIGN_TAG || first == NO_PENDING) {
+            return second;
+        }
+        int val = fn.addToLeaf((int) first, (int) second);
+        return (first & 0xFFFFFFFF00000000L) | (val & 0xFFFFFFFFL);
+    }
+
+    /*
+     * REQUIRES: treeInd covers len leaves
+     * MODIFIES: this
+     * EFFECTS: Hands the pending tag of the node down to both children and clears it
+     */
+    private void push(int treeInd, int len) {
+        if (lazyKind == null || treeInd >= capacity || lazyKind[treeInd] == NO_TAG) {
+            return;
+        }
+        applyTag(2 * treeInd, len / 2, lazyKind[treeInd], lazyVal[treeInd]);
+        applyTag(2 * treeInd + 1, len / 2, lazyKind[treeInd], lazyVal[treeInd]);
+        lazyKind[treeInd] = NO_TAG;
+    }
+
+    /*
+     * REQUIRES: treeInd between 1 and 2 * capacity - 1
+     * MODIFIES: this
+     * EFFECTS: Pushes the pending tags of every ancestor of the node, from the root down, so the node
+     *          holds its exact value
+     */
+    private void pushPath(int treeInd) {
+        if (!tagsPending) {
+            return;
+        }
+        for (int shift = 31 - Integer.numberOfLeadingZeros(treeInd); shift > 0; shift--) {
+            int ancestor = treeInd >> shift;
+            push(ancestor, nodeLen(ancestor));
+        }
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Pushes every pending tag down to the leaves
+     */
+    private void pushAll() {
+        if (!tagsPending) {
+            return;
+        }
+        for (int treeInd = TREE_ROOT_IND; treeInd < capacity; treeInd++) {
+            push(treeInd, nodeLen(treeInd));
+        }
+        tagsPending = false;
+    }
+
+    /*
+     * REQUIRES: Valid increasing range between 0 and getLeafCount()-1
+     * MODIFIES: this
+     * EFFECTS: Records the leaves l to r as changed, allocating the dirty leaf set on the first change
+     */
+    private void markDirty(int l, int r) {
+        if (dirtyLeaves == null) {
+            dirtyLeaves = new BitSet(leafCount);
+        }
+        dirtyLeaves.set(l, r + 1);
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Allocates the lazy tag arrays on the first range update
+     */
+    private void ensureLazyTags() {
+        if (lazyKind == null) {
+            lazyKind = new byte[capacity];
+            lazyVal = new int[capacity];
+        }
+    }
+
+    /*
+     * REQUIRES: newCapacity is a power of 2 greater than capacity
+     * MODIFIES: this
+     * EFFECTS: Replaces the node and lazy tag arrays of the active aggregate with ones for newCapacity leaf slots,
+     *          where the old tree is the leftmost subtree and every other node is the identity
+     */
+    private void growAggregate(int newCapacity) {
+        int extraLevels = Integer.numberOfTrailingZeros(newCapacity) - Integer.numberOfTrailingZeros(capacity);
+        int[] grown = new int[2 * newCapacity];
+        Arrays.fill(grown, identity());
+        for (int levelStart = TREE_ROOT_IND; levelStart <= capacity; levelStart <<= 1) {
+            System.arraycopy(tree, levelStart, grown, levelStart << extraLevels, levelStart);
+        }
+        for (int treeInd = (TREE_ROOT_IND << extraLevels) >> 1; treeInd >= TREE_ROOT_IND; treeInd >>= 1) {
+            grown[treeInd] = merge(grown[2 * treeInd], grown[2 * treeInd + 1]);
+        }
+        tree = grown;
+
+        if (lazyKind != null) {
+            byte[] grownKind = new byte[newCapacity];
+            int[] grownVal = new int[newCapacity];
+            for (int levelStart = TREE_ROOT_IND; levelStart < capacity; levelStart <<= 1) {
+                System.arraycopy(lazyKind, levelStart, grownKind, levelStart << extraLevels, levelStart);
+                System.arraycopy(lazyVal, levelStart, grownVal, levelStart << extraLevels, levelStart);
+            }
+            lazyKind = grownKind;
+            lazyVal = grownVal;
+        }
+    }
+
+    /*
+     * REQUIRES: Valid increasing range between 0 and getLeafCount()-1; kind is ADD_TAG or ASSIGN_TAG
+     * MODIFIES: this
+     * EFFECTS: Applies the range update to the active aggregate
+     */
+    private void rangeUpdate(int l, int r, byte kind, int val) {
+        ensureLazyTags();
+        tagsPending = true;
+        rangeApply(TREE_ROOT_IND, 0, capacity - 1, l, r, kind, val);
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Runs the update against every kept aggregate other than the active one, untraced, and then
+     *          makes the active aggregate current again
+     */
+    private void updateInactiveAggregates(Runnable update) {
+        if (aggregateFns == null) {
+            return;
         }
+        int active = activeAggregate;
+        TreeTrace activeTrace = trace;
+        trace = null;
+        for (int i = 0; i < aggregateFns.length; i++) {
+            if (i != active && aggregateKept[i]) {
+                selectAggregate(i);
+                update.run();
+            }
+        }
+        selectAggregate(active);
+        trace = activeTrace;
+    }
+
+    /*
+     * Fills the range stats from the subtree of the node
+     * REQUIRES: Valid range (l r) between 0 and capacity-1;
+     *           treeInd between 1 and 2 * capacity - 1;
+     *           Valid increasing range(targetL targetR) between 0 and leafCount-1;
+     *           each tag is the composition of the tags of every ancestor of treeInd in that aggregate
+     * MODIFIES: stats
+     * EFFECTS: Merges every canonical node of the target range inside the subtree into stats, left to right
+     */
+    private void walkRangeStats(RangeStats stats, int treeInd, int l, int r, int targetL, int targetR,
+                                long sumTag, long productTag, long minTag, long maxTag) {
+        if (targetR < l || r < targetL) {
+            return;
+        }
+        if (targetL <= l && r <= targetR) {
+            int len = r - l + 1;
+            stats.set(statsFn(SUM_STAT).merge(stats.getSum(), readStat(SUM_STAT, treeInd, len, sumTag)),
+                    statsFn(PRODUCT_STAT).merge(stats.getProduct(), readStat(PRODUCT_STAT, treeInd, len, productTag)),
+                    statsFn(MIN_STAT).merge(stats.getMin(), readStat(MIN_STAT, treeInd, len, minTag)),
+                    statsFn(MAX_STAT).merge(stats.getMax(), readStat(MAX_STAT, treeInd, len, maxTag)),
+                    stats.getCount());
+            return;
+        }
+
+        int mid = l + (r - l) / 2;
+        long childSumTag = statTagBelow(SUM_STAT, treeInd, sumTag);
+        long childProductTag = statTagBelow(PRODUCT_STAT, treeInd, productTag);
+        long childMinTag = statTagBelow(MIN_STAT, treeInd, minTag);
+        long childMaxTag = statTagBelow(MAX_STAT, treeInd, maxTag);
+        walkRangeStats(stats, 2 * treeInd, l, mid, targetL, targetR, childSumTag, childProductTag, childMinTag,
+                childMaxTag);
+        walkRangeStats(stats, 2 * treeInd + 1, mid + 1, r, targetL, targetR, childSumTag, childProductTag,
+                childMinTag, childMaxTag);
+    }
+
+    /*
+     * REQUIRES: keepRangeStats has been called; stat is one of SUM_STAT, PRODUCT_STAT, MIN_STAT, MAX_STAT
+     * EFFECTS: Returns the merge function of the aggregate read for the given statistic
+     */
+    private MergeFunction statsFn(int stat) {
+        return aggregateFns[rangeStatsSlots[stat]];
+    }
+
+    /*
+     * REQUIRES: keepRangeStats has been called; treeInd covers len leaves; pending is the composition of the
+     *           tags of every ancestor of treeInd in the aggregate read for the given statistic
+     * EFFECTS: Returns the exact value of the node in the aggregate read for the given statistic
+     */
+    private int readStat(int stat, int treeInd, int len, long pending) {
+        int slot = rangeStatsSlots[stat];
+        return applyPending(aggregateFns[slot], nodesOf(slot)[treeInd], len, pending);
+    }
+
+    /*
+     * REQUIRES: keepRangeStats has been called; treeInd between 1 and capacity-1; pending is the composition of
+     *           the tags of every ancestor of treeInd in the aggregate read for the given statistic
+     * EFFECTS: Returns the composition of pending with the tag of the node, i.e. the pending tag of its children
+     */
+    private long statTagBelow(int stat, int treeInd, long pending) {
+        int slot = rangeStatsSlots[stat];
+        if (!tagsPendingOf(slot)) {
+            return NO_PENDING;
+        }
+        byte[] kinds = slot == activeAggregate ? lazyKind : aggregateLazyKinds[slot];
+        int[] vals = slot == activeAggregate ? lazyVal : aggregateLazyVals[slot];
+        return composeTags(aggregateFns[slot], tagAt(kinds, vals, treeInd), pending);
+    }
+
+    /*
+     * REQUIRES: 0 <= ind < aggregateFns.length
+     * EFFECTS: Returns the node values of the kept aggregate ind
+     */
+    private int[] nodesOf(int ind) {
+        return ind == activeAggregate ? tree : aggregateTrees[ind];
+    }
+
+    /*
+     * REQUIRES: 0 <= ind < aggregateFns.length
+     * EFFECTS: Returns true if the kept aggregate ind has pending range updates
+     */
+    private boolean tagsPendingOf(int ind) {
+        return ind == activeAggregate ? tagsPending : aggregateTagsPending[ind];
+    }
+
+    /*
+     * REQUIRES: 0 <= ind < aggregateFns.length, or ind == activeAggregate
+     * MODIFIES: this
+     * EFFECTS: Stores the fields of the active aggregate and points them at the aggregate slot ind
+     */
+    private void selectAggregate(int ind) {
+        if (aggregateFns == null) {
+            return;
+        }
+        aggregateTrees[activeAggregate] = tree;
+        aggregateLazyKinds[activeAggregate] = lazyKind;
+        aggregateLazyVals[activeAggregate] = lazyVal;
+        aggregateTagsPending[activeAggregate] = tagsPending;
+
+        activeAggregate = ind;
+        mergeFn = aggregateFns[ind];
+        tree = aggregateTrees[ind];
+        lazyKind = aggregateLazyKinds[ind];
+        lazyVal = aggregateLazyVals[ind];
+        tagsPending = aggregateTagsPending[ind];
+    }
+
+    /*
+     * REQUIRES: ind is a maintained aggregate slot
+     * MODIFIES: this
+     * EFFECTS: Makes the aggregate slot ind the active one; if the previous one was not kept its arrays are
+     *          released, since nothing maintains them any more
+     */
+    private void switchAggregate(int ind) {
+        if (aggregateFns == null || ind == activeAggregate) {
+            return;
+        }
+        int prev = activeAggregate;
+        selectAggregate(ind);
+        if (!aggregateKept[prev]) {
+            aggregateTrees[prev] = null;
+            aggregateLazyKinds[prev] = null;
+            aggregateLazyVals[prev] = null;
+        }
+    }
+
+    /*
+     * REQUIRES: aggregateFns != null
+     * MODIFIES: this
+     * EFFECTS: Builds the aggregate of the given merge function from the current leaves in a slot that is not
+     *          maintained (a new one if there is none) without making it active, and returns the slot
+     */
+    private int buildAggregate(MergeFunction fn) {
+        pushAll();
+        int[] leaves = Arrays.copyOfRange(tree, capacity, capacity + leafCount);
+        int ind = 0;
+        while (ind < aggregateFns.length && isMaintained(ind)) {
+            ind++;
+        }
+        if (ind == aggregateFns.length) {
+            growAggregateSlots();
+        }
+        aggregateFns[ind] = fn;
+        aggregateTrees[ind] = new int[2 * capacity];
+        aggregateLazyKinds[ind] = null;
+        aggregateLazyVals[ind] = null;
+        aggregateTagsPending[ind] = false;
+
+        int active = activeAggregate;
+        selectAggregate(ind);
+        System.arraycopy(leaves, 0, tree, capacity, leafCount);
+        fillPadding();
+        buildAll();
+        selectAggregate(active);
+        return ind;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Adds one empty aggregate slot that is not kept
+     */
+    private void growAggregateSlots() {
+        int slots = aggregateFns.length + 1;
+        aggregateFns = Arrays.copyOf(aggregateFns, slots);
+        aggregateTrees = Arrays.copyOf(aggregateTrees, slots);
+        aggregateLazyKinds = Arrays.copyOf(aggregateLazyKinds, slots);
+        aggregateLazyVals = Arrays.copyOf(aggregateLazyVals, slots);
+        aggregateTagsPending = Arrays.copyOf(aggregateTagsPending, slots);
+        aggregateKept = Arrays.copyOf(aggregateKept, slots);
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Gives the current merge function the first aggregate slot, not kept, if there are no slots yet
+     */
+    private void ensureAggregates() {
+        if (aggregateFns == null) {
+            aggregateFns = new MergeFunction[]{mergeFn};
+            aggregateTrees = new int[][]{tree};
+            aggregateLazyKinds = new byte[][]{lazyKind};
+            aggregateLazyVals = new int[][]{lazyVal};
+            aggregateTagsPending = new boolean[]{tagsPending};
+            aggregateKept = new boolean[]{false};
+            activeAggregate = 0;
+        }
+    }
+
+    /*
+     * REQUIRES: 0 <= ind < aggregateFns.length
+     * EFFECTS: Returns true if the aggregate slot ind is kept up to date, i.e. it is kept or active
+     */
+    private boolean isMaintained(int ind) {
+        return aggregateKept[ind] || ind == activeAggregate;
+    }
+
+    /*
+     * EFFECTS: Returns the slot of the current merge function if it has the same name and modulus as the given
+     *          one, otherwise that of the kept aggregate with the same name and modulus, or -1 if there is none
+     */
+    private int findAggregate(MergeFunction fn) {
+        if (mergeFn.getName().equals(fn.getName()) && mergeFn.getModulus() == fn.getModulus()) {
+            return activeAggregate;
+        }
+        int ind = findKeptAggregate(fn.getName());
+        return (ind >= 0 && aggregateFns[ind].getModulus() == fn.getModulus()) ? ind : -1;
+    }
+
+    /*
+     * EFFECTS: Returns the slot of the current merge function if it has the given name, otherwise that of the
+     *          kept aggregate with the given name, or -1 if there is none
+     */
+    private int findAggregate(String name) {
+        return mergeFn.getName().equals(name) ? activeAggregate : findKeptAggregate(name);
+    }
+
+    /*
+     * EFFECTS: Returns the slot of the kept aggregate with the given merge function name (kept names are unique),
+     *          or -1 if there is none
+     */
+    private int findKeptAggregate(String name) {
+        if (aggregateFns == null) {
+            return -1;
+        }
+        for (int i = 0; i < aggregateFns.length; i++) {
+            if (aggregateKept[i] && aggregateFns[i].getName().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * REQUIRES: treeInd between 1 and 2 * capacity - 1
+     * EFFECTS: Returns the number of leaf slots covered by the node
+     */
+    private int nodeLen(int treeInd) {
+        return capacity >> (31 - Integer.numberOfLeadingZeros(treeInd));
     }
 
     /*
-     * EFFECTS: Merges 2 nodes based on the current merge function;
-     *          Merge process includes modding with a large prime to handle overflow
+     * EFFECTS: Merges 2 values based on the current merge function
      */
-    private int merge(TreeNode left, TreeNode right) {
-        return merge(left.getVal(), right.getVal());
+    private int merge(int left, int right) {
+        return mergeFn.merge(left, right);
+    }
+
+    /*
+     * EFFECTS: Returns the value that leaves the other operand unchanged under the current merge function
+     */
+    private int identity() {
+        return mergeFn.identity();
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Sets every leaf slot past the last leaf to the identity of the current merge function
+     */
+    private void fillPadding() {
+        int id = identity();
+        for (int i = capacity + leafCount; i < 2 * capacity; i++) {
+            tree[i] = id;
+        }
     }
 
     /*
@@ -212,10 +1368,52 @@ public class SegmentTree {
     private JSONArray getLeavesJson() {
         JSONArray jsonArray = new JSONArray();
 
-        for (TreeNode leaf : leaves) {
-            jsonArray.put(leaf.toJson());
+        for (int i = 0; i < leafCount; i++) {
+            jsonArray.put(getLeaf(i).toJson());
         }
 
         return jsonArray;
     }
+
+    /*
+     * EFFECTS: Returns the values of the given tree nodes
+     */
+    private static int[] toValues(ArrayList<TreeNode> arr) {
+        int[] values = new int[arr.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = arr.get(i).getVal();
+        }
+        return values;
+    }
+
+    // Represents the build of one subtree that splits into 2 parallel tasks above the build threshold
+    private class BuildTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int treeInd;
+        private final int left;
+        private final int right;
+
+        BuildTask(int treeInd, int left, int right) {
+            this.treeInd = treeInd;
+            this.left = left;
+            this.right = right;
+        }
+
+        /*
+         * MODIFIES: SegmentTree.this
+         * EFFECTS: Builds the subtree sequentially if it is small enough, otherwise builds both halves in
+         *          parallel and merges them into this node
+         */
+        @Override
+        protected void compute() {
+            if (right - left + 1 <= PARALLEL_BUILD_THRESHOLD) {
+                build(treeInd, left, right);
+                return;
+            }
+            int mid = left + (right - left) / 2;
+            invokeAll(new BuildTask(2 * treeInd, left, mid), new BuildTask(2 * treeInd + 1, mid + 1, right));
+            tree[treeInd] = merge(tree[2 * treeInd], tree[2 * treeInd + 1]);
+        }
+    }
 }
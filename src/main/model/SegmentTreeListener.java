@@ -0,0 +1,35 @@
+package model;
+
+import model.merge.MergeFunction;
+
+/*
+ * Represents an observer of the changes made to a SegmentTree's leaves and merge function, notified after each
+ * change has been applied; replaying the calls in order on a copy of the tree reproduces it
+ */
+public interface SegmentTreeListener {
+
+    /*
+     * EFFECTS: Called after the leaf with the specified index was set to val
+     */
+    void leafUpdated(int valInd, int val);
+
+    /*
+     * EFFECTS: Called after a leaf with the given value was appended after the last one
+     */
+    void leafAppended(int val);
+
+    /*
+     * EFFECTS: Called after delta was added to every leaf in the range l to r
+     */
+    void rangeAdded(int l, int r, int delta);
+
+    /*
+     * EFFECTS: Called after every leaf in the range l to r was set to val
+     */
+    void rangeAssigned(int l, int r, int val);
+
+    /*
+     * EFFECTS: Called after the tree switched to the given merge function
+     */
+    void mergeFnChanged(MergeFunction mergeFn);
+}
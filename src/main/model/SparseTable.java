@@ -0,0 +1,87 @@
+package model;
+
+import model.merge.MergeFunction;
+
+/*
+ * Represents a frozen, read-only view of a tree's leaves for an idempotent merge function (Min, Max, Gcd, And, Or)
+ * that answers any range with 2 lookups: level k holds the merge of every run of 2^k leaves, and a range is
+ * covered by the 2 (possibly overlapping) runs of the largest length that fits in it
+ *
+ * Levels are built one after the other with a sequential pass over the previous level. The table holds about
+ * n * log2(n) values (see memoryBytes), so it trades memory for O(1) queries. Updates are not supported: thaw
+ * returns a mutable SegmentTree with the same leaves.
+ */
+public class SparseTable implements RangeQueryEngine {
+    private final int[][] levels; // Holds the merge of leaves i to i + 2^k - 1 at levels[k][i]
+    private final MergeFunction mergeFn; // Tracks the merge function being used
+
+    /*
+     * REQUIRES: values.length >= 1; mergeFn.isIdempotent()
+     * MODIFIES: this
+     * EFFECTS: Builds the table from the given leaf values in O(n log n)
+     */
+    public SparseTable(int[] values, MergeFunction mergeFn) {
+        if (!mergeFn.isIdempotent()) {
+            throw new IllegalArgumentException(mergeFn.getName() + " is not idempotent");
+        }
+        this.mergeFn = mergeFn;
+        levels = new int[32 - Integer.numberOfLeadingZeros(values.length)][];
+        levels[0] = values.clone();
+        for (int k = 1; k < levels.length; k++) {
+            int[] prev = levels[k - 1];
+            int half = 1 << (k - 1);
+            int[] cur = new int[values.length - (1 << k) + 1];
+            for (int i = 0; i < cur.length; i++) {
+                cur[i] = mergeFn.merge(prev[i], prev[i + half]);
+            }
+            levels[k] = cur;
+        }
+
+        EventLog.getInstance().logEvent(new Event("Froze " + values.length + " values into a sparse table"));
+    }
+
+    /*
+     * EFFECTS: Always throws UnsupportedOperationException; use thaw() to get a tree that can be updated
+     */
+    @Override
+    public void updateVal(int valInd, int val) {
+        throw new UnsupportedOperationException("A sparse table is read-only, thaw it before updating");
+    }
+
+    @Override
+    public int rangeSumProduct(int l, int r) {
+        if (l == r) {
+            return levels[0][l];
+        }
+        int k = 31 - Integer.numberOfLeadingZeros(r - l + 1);
+        return mergeFn.merge(levels[k][l], levels[k][r - (1 << k) + 1]);
+    }
+
+    @Override
+    public int getLeafCount() {
+        return levels[0].length;
+    }
+
+    @Override
+    public MergeFunction getMergeFn() {
+        return mergeFn;
+    }
+
+    /*
+     * EFFECTS: Returns the number of bytes taken by the values of every level
+     */
+    public long memoryBytes() {
+        long count = 0;
+        for (int[] level : levels) {
+            count += level.length;
+        }
+        return count * Integer.BYTES;
+    }
+
+    /*
+     * EFFECTS: Returns a new mutable SegmentTree with the same leaves and merge function
+     */
+    public SegmentTree thaw() {
+        return new SegmentTree(levels[0].clone(), mergeFn);
+    }
+}
@@ -0,0 +1,89 @@
+package model;
+
+import java.util.Arrays;
+
+/*
+ * Represents a reusable record of the nodes a segment tree operation walked through (path) and the nodes it
+ * used for computing results/performing updates (compute), kept apart from the tree so that untraced
+ * operations do not write anything for the renderers
+ *
+ * Entries are appended in the order the tree visits the nodes; when a node is recorded more than once, the
+ * latest entry decides its highlight, just like repainting a node would. Clearing keeps the allocated storage.
+ */
+public class TreeTrace {
+    public static final int NO_HIGHLIGHT = 0;
+    public static final int PATH_HIGHLIGHT = 1;
+    public static final int COMPUTE_HIGHLIGHT = 2;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] entries = new long[INITIAL_CAPACITY]; // Holds (treeInd << 2 | highlight) for every visit
+    private int size; // Tracks the number of recorded visits
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Records that the node at treeInd is part of the current path
+     */
+    public void recordPath(int treeInd) {
+        record(treeInd, PATH_HIGHLIGHT);
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Records that the node at treeInd is used for computation
+     */
+    public void recordCompute(int treeInd) {
+        record(treeInd, COMPUTE_HIGHLIGHT);
+    }
+
+    /*
+     * EFFECTS: Returns the latest highlight recorded for the node at treeInd, or NO_HIGHLIGHT
+     */
+    public int getHighlight(int treeInd) {
+        for (int i = size - 1; i >= 0; i--) {
+            if ((entries[i] >>> 2) == treeInd) {
+                return (int) (entries[i] & 3);
+            }
+        }
+        return NO_HIGHLIGHT;
+    }
+
+    /*
+     * EFFECTS: Returns the console color for the latest highlight recorded for the node at treeInd
+     */
+    public String getColor(int treeInd) {
+        int highlight = getHighlight(treeInd);
+        if (highlight == COMPUTE_HIGHLIGHT) {
+            return TreeNode.HIGHLIGHT_COMPUTATION_COLOR;
+        } else if (highlight == PATH_HIGHLIGHT) {
+            return TreeNode.HIGHLIGHT_PATH_COLOR;
+        }
+        return TreeNode.DEFAULT_COLOR;
+    }
+
+    /*
+     * EFFECTS: Returns the number of recorded visits
+     */
+    public int size() {
+        return size;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Forgets every recorded visit
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /*
+     * MODIFIES: this
+     * EFFECTS: Appends a visit, growing the storage when it is full
+     */
+    private void record(int treeInd, int highlight) {
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, 2 * size);
+        }
+        entries[size++] = ((long) treeInd << 2) | highlight;
+    }
+}
@@ -0,0 +1,120 @@
+package model;
+
+import model.merge.MergeFunction;
+
+import java.util.Arrays;
+
+/*
+ * Represents a wide segment tree where every internal node merges WIDTH children instead of 2, so a tree over n
+ * leaves is only log16(n) levels high (4x lower than SegmentTree) and each level is one contiguous block
+ *
+ * Level 0 holds the leaves; level k + 1 holds one node per block of WIDTH nodes of level k. Every level is padded
+ * with identity values to a whole number of blocks and levels are stored one after the other in a single array,
+ * so an update or query touches one cache-line-sized block per level instead of a scattered node per level.
+ * Blocks are reduced with MergeFunction.mergeAll, which merge functions may specialise (Addition sums a block in
+ * a long and reduces once). Modular results are canonical, so grouping leaves 16 at a time instead of 2 at a time
+ * gives the same answers as a SegmentTree, also for negative leaves.
+ */
+public class WideSegmentTree implements RangeQueryEngine {
+    public static final int WIDTH = 16;
+
+    private static final int SHIFT = 4; // log2(WIDTH)
+
+    private final int[] nodes; // Holds every level one after the other, leaves first
+    private final int[] levelStart; // Holds the index in nodes where every level begins
+    private final MergeFunction mergeFn; // Tracks the merge function being used
+    private final int leafCount; // Tracks the number of leaves the tree was built with
+
+    /*
+     * REQUIRES: values.length >= 1
+     * MODIFIES: this
+     * EFFECTS: Builds the tree from the given leaf values with the given merge function
+     */
+    public WideSegmentTree(int[] values, MergeFunction mergeFn) {
+        this.mergeFn = mergeFn;
+        leafCount = values.length;
+
+        int height = 1;
+        for (int count = leafCount; count > 1; count = blocks(count)) {
+            height++;
+        }
+        levelStart = new int[height + 1];
+        for (int k = 0, count = leafCount; k < height; k++, count = blocks(count)) {
+            levelStart[k + 1] = levelStart[k] + blocks(count) * WIDTH;
+        }
+
+        nodes = new int[levelStart[height]];
+        Arrays.fill(nodes, mergeFn.identity());
+        System.arraycopy(values, 0, nodes, 0, leafCount);
+        for (int k = 1; k < height; k++) {
+            int childBlocks = (levelStart[k] - levelStart[k - 1]) >> SHIFT;
+            for (int i = 0; i < childBlocks; i++) {
+                int from = levelStart[k - 1] + (i << SHIFT);
+                nodes[levelStart[k] + i] = mergeFn.mergeAll(nodes, from, from + WIDTH);
+            }
+        }
+
+        EventLog.getInstance().logEvent(new Event("Generated new wide segment tree with " + leafCount
+                + " values"));
+    }
+
+    @Override
+    public void updateVal(int valInd, int val) {
+        nodes[valInd] = val;
+        int ind = valInd;
+        for (int k = 1; k < levelStart.length - 1; k++) {
+            int from = levelStart[k - 1] + ((ind >> SHIFT) << SHIFT);
+            ind >>= SHIFT;
+            nodes[levelStart[k] + ind] = mergeFn.mergeAll(nodes, from, from + WIDTH);
+        }
+    }
+
+    @Override
+    public int rangeSumProduct(int l, int r) {
+        int resL = mergeFn.identity();
+        int resR = mergeFn.identity();
+        for (int k = 0; l <= r; k++) {
+            int base = levelStart[k];
+            if ((l >> SHIFT) == (r >> SHIFT)) {
+                return mergeFn.merge(mergeFn.merge(resL, mergeFn.mergeAll(nodes, base + l, base + r + 1)), resR);
+            }
+            if ((l & (WIDTH - 1)) != 0) {
+                int blockEnd = (l | (WIDTH - 1)) + 1;
+                resL = mergeFn.merge(resL, mergeFn.mergeAll(nodes, base + l, base + blockEnd));
+                l = blockEnd;
+            }
+            if ((r & (WIDTH - 1)) != WIDTH - 1) {
+                int blockStart = r & ~(WIDTH - 1);
+                resR = mergeFn.merge(mergeFn.mergeAll(nodes, base + blockStart, base + r + 1), resR);
+                r = blockStart - 1;
+            }
+            l >>= SHIFT;
+            r = ((r + 1) >> SHIFT) - 1;
+        }
+        return mergeFn.merge(resL, resR);
+    }
+
+    @Override
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    @Override
+    public MergeFunction getMergeFn() {
+        return mergeFn;
+    }
+
+    /*
+     * EFFECTS: Returns the number of levels, leaves included
+     */
+    public int getHeight() {
+        return levelStart.length - 1;
+    }
+
+    /*
+     * EFFECTS: Returns the number of WIDTH-sized blocks needed to hold count nodes
+     */
+    private static int blocks(int count) {
+        return (count + WIDTH - 1) >> SHIFT;
+    }
+}
@@ -0,0 +1,31 @@
+package model.merge;
+
+// Represents the merge function that keeps the bitwise and of 2 values
+public final class AndMerge implements MergeFunction {
+    public static final String NAME = "And";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int identity() {
+        return -1;
+    }
+
+    @Override
+    public int merge(int left, int right) {
+        return left & right;
+    }
+
+    @Override
+    public int repeat(int val, int len) {
+        return val;
+    }
+
+    @Override
+    public boolean isIdempotent() {
+        return true;
+    }
+}
@@ -0,0 +1,45 @@
+package model.merge;
+
+/*
+ * Represents the merge function that keeps the greatest common divisor of 2 values
+ *
+ * Different values are merged by their absolute values, so their gcd is never negative, while 0 and a repeated
+ * value are passed through unchanged. This keeps 0 a true identity and merge idempotent for negative values too,
+ * so every engine returns the same result for a range whether or not it merges single leaves with the identity.
+ */
+public final class GcdMerge implements MergeFunction {
+    public static final String NAME = "Gcd";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int identity() {
+        return 0;
+    }
+
+    @Override
+    public int merge(int left, int right) {
+        if (left == 0 || left == right) {
+            return right;
+        }
+        if (right == 0) {
+            return left;
+        }
+        int a = Math.abs(left);
+        int b = Math.abs(right);
+        while (b != 0) {
+            int rem = a % b;
+            a = b;
+            b = rem;
+        }
+        return a;
+    }
+
+    @Override
+    public boolean isIdempotent() {
+        return true;
+    }
+}
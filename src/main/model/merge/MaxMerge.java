@@ -0,0 +1,40 @@
+package model.merge;
+
+// Represents the merge function that keeps the maximum of 2 values
+public final class MaxMerge implements MergeFunction {
+    public static final String NAME = "Max";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int identity() {
+        return Integer.MIN_VALUE;
+    }
+
+    @Override
+    public int merge(int left, int right) {
+        return Math.max(left, right);
+    }
+
+    @Override
+    public int mergeAll(int[] vals, int from, int to) {
+        int result = vals[from];
+        for (int i = from + 1; i < to; i++) {
+            result = Math.max(result, vals[i]);
+        }
+        return result;
+    }
+
+    @Override
+    public int repeat(int val, int len) {
+        return val;
+    }
+
+    @Override
+    public boolean isIdempotent() {
+        return true;
+    }
+}
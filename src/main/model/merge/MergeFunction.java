@@ -0,0 +1,165 @@
+package model.merge;
+
+import static resources.TreeConfig.MOD;
+
+/*
+ * Represents an associative and commutative operation used to merge 2 child nodes of a segment tree,
+ * together with its identity element
+ */
+public interface MergeFunction {
+
+    /*
+     * EFFECTS: Returns the display name of the merge function
+     */
+    String getName();
+
+    /*
+     * EFFECTS: Returns the value that leaves the other operand unchanged when merged
+     */
+    int identity();
+
+    /*
+     * EFFECTS: Merges 2 values
+     */
+    int merge(int left, int right);
+
+    /*
+     * REQUIRES: 0 <= from < to <= vals.length
+     * EFFECTS: Returns the merge of vals[from] to vals[to - 1], in order
+     */
+    default int mergeAll(int[] vals, int from, int to) {
+        int result = vals[from];
+        for (int i = from + 1; i < to; i++) {
+            result = merge(result, vals[i]);
+        }
+        return result;
+    }
+
+    /*
+     * REQUIRES: len >= 1
+     * EFFECTS: Returns the merge of len copies of val, computed with O(log len) merges
+     */
+    default int repeat(int val, int len) {
+        int result = val;
+        int base = val;
+        boolean hasResult = false;
+        for (int exp = len; exp > 0; exp >>= 1) {
+            if ((exp & 1) == 1) {
+                result = hasResult ? merge(result, base) : base;
+                hasResult = true;
+            }
+            if (exp > 1) {
+                base = merge(base, base);
+            }
+        }
+        return result;
+    }
+
+    /*
+     * EFFECTS: Returns true if adding the same delta to every leaf of a node can be folded into the node value
+     */
+    default boolean supportsRangeAdd() {
+        return false;
+    }
+
+    /*
+     * REQUIRES: supportsRangeAdd(); agg is the merge of len leaves
+     * EFFECTS: Returns the merge of the same len leaves after delta is added to each of them
+     */
+    default int addToAll(int agg, int delta, int len) {
+        throw new UnsupportedOperationException(getName() + " cannot fold a range add into a node value");
+    }
+
+    /*
+     * EFFECTS: Returns true if merging a value with itself gives the value back, so overlapping parts of a range
+     *          may be merged twice
+     */
+    default boolean isIdempotent() {
+        return false;
+    }
+
+    /*
+     * EFFECTS: Returns true if every value has an inverse, so merged parts can be removed again with unmerge
+     */
+    default boolean isInvertible() {
+        return false;
+    }
+
+    /*
+     * REQUIRES: isInvertible()
+     * EFFECTS: Returns the canonical value x with merge(part, x) == canonical(whole)
+     */
+    default int unmerge(int whole, int part) {
+        throw new UnsupportedOperationException(getName() + " is not invertible");
+    }
+
+    /*
+     * EFFECTS: Returns the representative of val that merge results are given in; merge functions with modular
+     *          arithmetic (Addition, Product) reduce it into [0, modulus), others return val itself
+     */
+    default int canonical(int val) {
+        return val;
+    }
+
+    /*
+     * EFFECTS: Returns the leaf value after delta is added to it; only merge functions with modular arithmetic
+     *          (Addition, Product) reduce the result, once it leaves (-modulus, modulus), others wrap around like
+     *          int addition
+     */
+    default int addToLeaf(int leaf, int delta) {
+        return leaf + delta;
+    }
+
+    /*
+     * EFFECTS: Returns the prime that sums and products of this merge function are modded with
+     */
+    default int getModulus() {
+        return MOD;
+    }
+
+    /*
+     * EFFECTS: Returns the merge function with the given display name;
+     *          throws IllegalArgumentException if no merge function has that name
+     */
+    static MergeFunction fromName(String name) {
+        switch (name) {
+            case SumMerge.NAME:
+                return new SumMerge();
+            case ProductMerge.NAME:
+                return new ProductMerge();
+            case MinMerge.NAME:
+                return new MinMerge();
+            case MaxMerge.NAME:
+                return new MaxMerge();
+            case GcdMerge.NAME:
+                return new GcdMerge();
+            case XorMerge.NAME:
+                return new XorMerge();
+            case AndMerge.NAME:
+                return new AndMerge();
+            case OrMerge.NAME:
+                return new OrMerge();
+            default:
+                throw new IllegalArgumentException("Unknown merge function: " + name);
+        }
+    }
+
+    /*
+     * EFFECTS: Returns the merge function with the given display name whose sums/products are modded with the
+     *          given modulus; throws IllegalArgumentException if no merge function has that name or the
+     *          modulus is not a prime
+     */
+    static MergeFunction fromName(String name, int modulus) {
+        if (modulus == MOD) {
+            return fromName(name);
+        }
+        switch (name) {
+            case SumMerge.NAME:
+                return new SumMerge(new ModArithmetic(modulus));
+            case ProductMerge.NAME:
+                return new ProductMerge(new ModArithmetic(modulus));
+            default:
+                return fromName(name);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package model.merge;
+
+import java.math.BigInteger;
+
+import static resources.TreeConfig.MOD;
+
+/*
+ * Represents modular arithmetic for a prime modulus chosen at runtime, using Barrett reduction so that no
+ * division instruction is needed per operation
+ *
+ * Every result is the canonical representative in [0, modulus), i.e. reduce(x) == Math.floorMod(x, modulus) for
+ * every |x| <= 2^62, so a sum or product has one representation whatever order or grouping it was computed in
+ * and every range query engine gives the same answer for negative values too.
+ */
+public final class ModArithmetic {
+    public static final ModArithmetic DEFAULT = new ModArithmetic(MOD);
+
+    private static final int BARRETT_SHIFT = 62;
+
+    private final int modulus; // Tracks the prime that values are reduced by
+    private final long barrettFactor; // Holds floor(2^62 / modulus)
+
+    /*
+     * EFFECTS: Constructs the arithmetic for the given modulus;
+     *          throws IllegalArgumentException if the modulus is not a positive prime
+     */
+    public ModArithmetic(int modulus) {
+        if (modulus < 2 || !BigInteger.valueOf(modulus).isProbablePrime(50)) {
+            throw new IllegalArgumentException("Modulus must be a positive prime: " + modulus);
+        }
+        this.modulus = modulus;
+        this.barrettFactor = (1L << BARRETT_SHIFT) / modulus;
+    }
+
+    /*
+     * EFFECTS: Returns the modulus
+     */
+    public int getModulus() {
+        return modulus;
+    }
+
+    /*
+     * EFFECTS: Returns (a + b) mod modulus, in [0, modulus)
+     */
+    public int add(int a, int b) {
+        long sum = (long) a + b;
+        if (sum >= 0 && sum < modulus) {
+            return (int) sum;
+        }
+        return reduce(sum);
+    }
+
+    /*
+     * EFFECTS: Returns a + b as is if it lies strictly between -modulus and modulus, otherwise (a + b) mod modulus
+     *          in [0, modulus); used for leaves, which keep the value they were given (negative ones too) for as
+     *          long as it needs no reduction
+     */
+    public int addUnreduced(int a, int b) {
+        long sum = (long) a + b;
+        if (sum < modulus && sum > -modulus) {
+            return (int) sum;
+        }
+        return reduce(sum);
+    }
+
+    /*
+     * EFFECTS: Returns (a * b) mod modulus, in [0, modulus)
+     */
+    public int multiply(int a, int b) {
+        return reduce((long) a * b);
+    }
+
+    /*
+     * REQUIRES: |x| <= 2^62
+     * EFFECTS: Returns x mod modulus, in [0, modulus); the quotient is estimated as
+     *          (x * floor(2^62 / modulus)) >> 62 from a 128-bit product, which is at most 2 below the true
+     *          quotient, and then corrected
+     */
+    public int reduce(long x) {
+        if (x < 0) {
+            int rem = reduceNonNegative(-x);
+            return rem == 0 ? 0 : modulus - rem;
+        }
+        return reduceNonNegative(x);
+    }
+
+    /*
+     * REQUIRES: 0 <= x <= 2^62
+     * EFFECTS: Returns x % modulus
+     */
+    private int reduceNonNegative(long x) {
+        long high = Math.multiplyHigh(x, barrettFactor);
+        long low = x * barrettFactor;
+        long quotient = (high << (64 - BARRETT_SHIFT)) | (low >>> BARRETT_SHIFT);
+
+        long rem = x - quotient * modulus;
+        if (rem >= modulus) {
+            rem -= modulus;
+        }
+        if (rem >= modulus) {
+            rem -= modulus;
+        }
+        return (int) rem;
+    }
+}
@@ -0,0 +1,48 @@
+package model.merge;
+
+// Represents the Product merge function; products are modded with a prime (MOD by default) to handle overflow
+public final class ProductMerge implements MergeFunction {
+    public static final String NAME = "Product";
+
+    private final ModArithmetic arithmetic; // Tracks the modular arithmetic used to reduce products
+
+    // EFFECTS: Constructs the Product merge function modulo MOD
+    public ProductMerge() {
+        this(ModArithmetic.DEFAULT);
+    }
+
+    // EFFECTS: Constructs the Product merge function modulo the modulus of the given arithmetic
+    public ProductMerge(ModArithmetic arithmetic) {
+        this.arithmetic = arithmetic;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int identity() {
+        return 1;
+    }
+
+    @Override
+    public int merge(int left, int right) {
+        return arithmetic.multiply(left, right);
+    }
+
+    @Override
+    public int canonical(int val) {
+        return arithmetic.reduce(val);
+    }
+
+    @Override
+    public int addToLeaf(int leaf, int delta) {
+        return arithmetic.addUnreduced(leaf, delta);
+    }
+
+    @Override
+    public int getModulus() {
+        return arithmetic.getModulus();
+    }
+}
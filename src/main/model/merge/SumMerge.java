@@ -0,0 +1,85 @@
+package model.merge;
+
+// Represents the Addition merge function; sums are modded with a prime (MOD by default) to handle overflow
+public final class SumMerge implements MergeFunction {
+    public static final String NAME = "Addition";
+
+    private final ModArithmetic arithmetic; // Tracks the modular arithmetic used to reduce sums
+
+    // EFFECTS: Constructs the Addition merge function modulo MOD
+    public SumMerge() {
+        this(ModArithmetic.DEFAULT);
+    }
+
+    // EFFECTS: Constructs the Addition merge function modulo the modulus of the given arithmetic
+    public SumMerge(ModArithmetic arithmetic) {
+        this.arithmetic = arithmetic;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int identity() {
+        return 0;
+    }
+
+    @Override
+    public int merge(int left, int right) {
+        return arithmetic.add(left, right);
+    }
+
+    @Override
+    public int mergeAll(int[] vals, int from, int to) {
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += vals[i];
+        }
+        return arithmetic.reduce(sum);
+    }
+
+    @Override
+    public int repeat(int val, int len) {
+        if (len == 1) {
+            return val;
+        }
+        return arithmetic.multiply(val, arithmetic.reduce(len));
+    }
+
+    @Override
+    public boolean supportsRangeAdd() {
+        return true;
+    }
+
+    @Override
+    public int addToAll(int agg, int delta, int len) {
+        return arithmetic.add(agg, arithmetic.reduce((long) delta * len));
+    }
+
+    @Override
+    public boolean isInvertible() {
+        return true;
+    }
+
+    @Override
+    public int unmerge(int whole, int part) {
+        return arithmetic.reduce((long) whole - part);
+    }
+
+    @Override
+    public int canonical(int val) {
+        return arithmetic.reduce(val);
+    }
+
+    @Override
+    public int addToLeaf(int leaf, int delta) {
+        return arithmetic.addUnreduced(leaf, delta);
+    }
+
+    @Override
+    public int getModulus() {
+        return arithmetic.getModulus();
+    }
+}
@@ -0,0 +1,36 @@
+package model.merge;
+
+// Represents the merge function that keeps the bitwise xor of 2 values
+public final class XorMerge implements MergeFunction {
+    public static final String NAME = "Xor";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int identity() {
+        return 0;
+    }
+
+    @Override
+    public int merge(int left, int right) {
+        return left ^ right;
+    }
+
+    @Override
+    public int repeat(int val, int len) {
+        return (len & 1) == 1 ? val : 0;
+    }
+
+    @Override
+    public boolean isInvertible() {
+        return true;
+    }
+
+    @Override
+    public int unmerge(int whole, int part) {
+        return whole ^ part;
+    }
+}
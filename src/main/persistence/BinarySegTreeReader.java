@@ -0,0 +1,327 @@
+package persistence;
+
+import model.SegmentTree;
+import model.merge.MergeFunction;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32C;
+
+import static persistence.BinarySegTreeWriter.DELTA_FORMAT_VERSION;
+import static persistence.BinarySegTreeWriter.FIXED_HEADER_BYTES;
+import static persistence.BinarySegTreeWriter.FORMAT_VERSION;
+import static persistence.BinarySegTreeWriter.MAGIC;
+import static persistence.BinarySegTreeWriter.NODES_FORMAT_VERSION;
+
+// Represents a reader that reads a segment tree from a binary snapshot written by BinarySegTreeWriter
+public class BinarySegTreeReader {
+    public static final int NO_MISMATCH = -1;
+
+    private static final int CHUNK_SHIFT = 30; // Values are mapped in chunks of 1 GiB, as in MappedSegmentTree
+    private static final long CHUNK_BYTES = 1L << CHUNK_SHIFT;
+    private static final int CHUNK_INT_SHIFT = CHUNK_SHIFT - 2;
+    private static final int CHUNK_INT_MASK = (1 << CHUNK_INT_SHIFT) - 1;
+    private static final int MAX_VALUES = Integer.MAX_VALUE - 8; // Largest int array the JVM allocates
+
+    private String source;
+    private boolean verifyInBackground;
+    private CompletableFuture<Integer> verification;
+    private FileChannel channel;
+    private ByteBuffer header;
+    private byte[] name;
+    private int version;
+    private int leafCount;
+    private MergeFunction mergeFn;
+    private long deltaFrom;
+
+    // EFFECTS: constructs reader to read from source file
+    public BinarySegTreeReader(String source) {
+        this(source, false);
+    }
+
+    // EFFECTS: constructs reader to read from source file; if verifyInBackground, reading a full-node snapshot
+    // also starts recomputing its internal nodes on another thread (see getVerification)
+    public BinarySegTreeReader(String source, boolean verifyInBackground) {
+        this.source = source;
+        this.verifyInBackground = verifyInBackground;
+    }
+
+    // EFFECTS: returns the background verification started by the last read, which completes with the index of the
+    // first node in the file that is not the merge of its children (or a padding leaf that is not the identity),
+    // or NO_MISMATCH if every node is consistent; null if the last read did not start one
+    public CompletableFuture<Integer> getVerification() {
+        return verification;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: reads the segment tree from file and returns it; the leaves of a snapshot, or every node of a
+    // full-node snapshot, are copied in bulk straight from the mapped file; throws IOException if the file cannot
+    // be read, is not a valid snapshot or fails its checksum
+    public SegmentTree read() throws IOException {
+        return load(null, 0L);
+    }
+
+    // MODIFIES: this, st
+    // EFFECTS: if the delta snapshot in the file was taken from the base snapshot with the given checksum (see
+    // snapshotChecksum), applies it to st, which must hold the tree the delta was taken from, and returns true:
+    // leaves appended since are appended, every changed leaf is set in one batch and the merge function is
+    // switched if it changed; otherwise leaves st unchanged and returns false; throws IOException if the file
+    // cannot be read, is not a valid delta snapshot for st or fails its checksum
+    public boolean applyDelta(SegmentTree st, long base) throws IOException {
+        return load(st, base) != null;
+    }
+
+    // EFFECTS: returns the checksum stored at the end of the full-node snapshot at the given path, which identifies
+    // the snapshot as the base of a delta chain or a TreeJournal; throws IOException if the file cannot be read or
+    // is not a full-node snapshot
+    static long snapshotChecksum(Path snapshot) throws IOException {
+        try (FileChannel in = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(2 * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer trailer = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            long position = in.size() - Integer.BYTES;
+            if (position < FIXED_HEADER_BYTES || in.read(header, 0) < header.capacity()
+                    || in.read(trailer, position) < trailer.capacity() || header.getInt(0) != MAGIC
+                    || header.getInt(Integer.BYTES) != NODES_FORMAT_VERSION) {
+                throw new IOException(snapshot + " is not a full-node segment tree snapshot");
+            }
+            return Integer.toUnsignedLong(trailer.flip().getInt());
+        }
+    }
+
+    // MODIFIES: this, deltaBase
+    // EFFECTS: reads a snapshot or full-node snapshot and returns its tree if deltaBase is null, otherwise applies
+    // a delta snapshot taken from the given base to deltaBase and returns it, or returns null if the delta was
+    // taken from another base
+    private SegmentTree load(SegmentTree deltaBase, long base) throws IOException {
+        verification = null;
+        try (FileChannel ch = FileChannel.open(Paths.get(source), StandardOpenOption.READ)) {
+            channel = ch;
+            readHeader(deltaBase != null);
+            MappedByteBuffer[] mapped = mapValues();
+            int[] values = copyValues(mapped);
+            if (version != FORMAT_VERSION) {
+                verifyChecksum(mapped);
+            }
+            if (version == DELTA_FORMAT_VERSION && deltaFrom != base) {
+                return null;
+            }
+            return build(values, mapped, deltaBase);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(source + " has an unknown merge function", e);
+        } finally {
+            channel = null;
+            header = null;
+            name = null;
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: reads the header and merge function name of the file and checks that it is a snapshot of a
+    // supported version, and a delta snapshot exactly if delta; throws IOException otherwise
+    private void readHeader(boolean delta) throws IOException {
+        header = readFully(0, FIXED_HEADER_BYTES);
+        if (header.getInt() != MAGIC) {
+            throw new IOException(source + " is not a segment tree snapshot");
+        }
+        version = header.getInt();
+        if (version != FORMAT_VERSION && version != NODES_FORMAT_VERSION && version != DELTA_FORMAT_VERSION) {
+            throw new IOException("Unsupported segment tree snapshot version " + version);
+        }
+        if ((version == DELTA_FORMAT_VERSION) != delta) {
+            throw new IOException(source + (delta ? " is not a delta snapshot" : " is a delta snapshot"));
+        }
+        leafCount = header.getInt();
+        int modulus = header.getInt();
+        int nameLen = header.getInt();
+        if (leafCount < 1 || nameLen < 0 || nameLen > channel.size() - FIXED_HEADER_BYTES) {
+            throw new IOException(source + " is truncated or corrupt");
+        }
+        name = readFully(FIXED_HEADER_BYTES, nameLen).array();
+        mergeFn = MergeFunction.fromName(new String(name, StandardCharsets.UTF_8), modulus);
+        if (delta) {
+            deltaFrom = readFully(FIXED_HEADER_BYTES + (long) nameLen, Long.BYTES).getLong();
+        }
+    }
+
+    // EFFECTS: checks that the rest of the file holds exactly the values (and checksum) the header calls for and
+    // maps the values in chunks of CHUNK_BYTES, since one mapping holds at most 2 GiB; throws IOException if it does
+    // not or they are too many to load
+    private MappedByteBuffer[] mapValues() throws IOException {
+        long valuesStart = FIXED_HEADER_BYTES + (long) name.length + deltaBaseBytes();
+        long valueCount = leafCount;
+        if (version == NODES_FORMAT_VERSION) {
+            valueCount = 2L * capacityFor(leafCount);
+        } else if (version == DELTA_FORMAT_VERSION) {
+            // Index and value pairs fill the rest of the file
+            valueCount = 2 * ((channel.size() - valuesStart - trailerBytes()) / (2 * Integer.BYTES));
+        }
+        if ((valueCount < 1 && version != DELTA_FORMAT_VERSION)
+                || channel.size() != valuesStart + valueCount * Integer.BYTES + trailerBytes()) {
+            throw new IOException(source + " is truncated or corrupt");
+        }
+        if (valueCount > MAX_VALUES) {
+            throw new IOException(source + " is too large to load");
+        }
+        long bytes = valueCount * Integer.BYTES;
+        MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((bytes + CHUNK_BYTES - 1) >>> CHUNK_SHIFT)];
+        for (int i = 0; i < chunks.length; i++) {
+            long start = (long) i << CHUNK_SHIFT;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, valuesStart + start,
+                    Math.min(CHUNK_BYTES, bytes - start));
+        }
+        return chunks;
+    }
+
+    // EFFECTS: returns the little-endian int views of the mapped chunks of values
+    private static IntBuffer[] intViews(MappedByteBuffer[] mapped) {
+        IntBuffer[] views = new IntBuffer[mapped.length];
+        for (int i = 0; i < mapped.length; i++) {
+            views[i] = mapped[i].duplicate().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        }
+        return views;
+    }
+
+    // EFFECTS: returns the mapped values copied in bulk into one array
+    private static int[] copyValues(MappedByteBuffer[] mapped) {
+        long count = 0;
+        for (MappedByteBuffer chunk : mapped) {
+            count += chunk.capacity() / Integer.BYTES;
+        }
+        int[] values = new int[(int) count];
+        int from = 0;
+        for (IntBuffer view : intViews(mapped)) {
+            int len = view.remaining();
+            view.get(values, from, len);
+            from += len;
+        }
+        return values;
+    }
+
+    // EFFECTS: throws IOException unless the checksum trailer matches the header, name and mapped values
+    private void verifyChecksum(MappedByteBuffer[] mapped) throws IOException {
+        CRC32C checksum = new CRC32C();
+        checksum.update(header.array());
+        checksum.update(name);
+        if (version == DELTA_FORMAT_VERSION) {
+            checksum.update(ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(0, deltaFrom));
+        }
+        for (MappedByteBuffer chunk : mapped) {
+            checksum.update(chunk.duplicate());
+        }
+        if ((int) checksum.getValue() != readFully(channel.size() - Integer.BYTES, Integer.BYTES).getInt()) {
+            throw new IOException(source + " failed its checksum");
+        }
+    }
+
+    // MODIFIES: this, deltaBase
+    // EFFECTS: returns the tree of a snapshot or full-node snapshot with the given values, starting its background
+    // verification if asked to, or applies the index and value pairs of a delta snapshot to deltaBase and
+    // returns it
+    private SegmentTree build(int[] values, MappedByteBuffer[] mapped, SegmentTree deltaBase) throws IOException {
+        if (version == FORMAT_VERSION) {
+            return new SegmentTree(values, mergeFn);
+        }
+        if (version == DELTA_FORMAT_VERSION) {
+            applyPairs(deltaBase, leafCount, values, mergeFn);
+            return deltaBase;
+        }
+        if (verifyInBackground) {
+            IntBuffer[] nodes = intViews(mapped);
+            int capacity = values.length / 2;
+            int count = leafCount;
+            MergeFunction fn = mergeFn;
+            verification = CompletableFuture.supplyAsync(() -> findMismatch(nodes, capacity, count, fn));
+        }
+        return new SegmentTree(leafCount, values, mergeFn);
+    }
+
+    // EFFECTS: returns the size of the checksum trailer of the file
+    private int trailerBytes() {
+        return (version == FORMAT_VERSION) ? 0 : Integer.BYTES;
+    }
+
+    // EFFECTS: returns the size of the base checksum that follows the name in a delta snapshot
+    private int deltaBaseBytes() {
+        return (version == DELTA_FORMAT_VERSION) ? Long.BYTES : 0;
+    }
+
+    // MODIFIES: st
+    // EFFECTS: grows st to leafCount leaves, sets the leaf of every index and value pair and switches st to mergeFn
+    // if it uses another merge function; throws IOException if the pairs do not fit st
+    private void applyPairs(SegmentTree st, int leafCount, int[] pairs, MergeFunction mergeFn) throws IOException {
+        int[] indices = new int[pairs.length / 2];
+        int[] values = new int[pairs.length / 2];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = pairs[2 * i];
+            values[i] = pairs[2 * i + 1];
+            if (indices[i] < 0 || indices[i] >= leafCount) {
+                throw new IOException(source + " changes a leaf outside the tree");
+            }
+        }
+        if (leafCount < st.getLeafCount()) {
+            throw new IOException(source + " was taken from a larger tree");
+        }
+
+        st.ensureCapacity(leafCount);
+        while (st.getLeafCount() < leafCount) {
+            st.append(st.getMergeFn().identity());
+        }
+        st.applyUpdates(indices, values);
+        if (!mergeFn.getName().equals(st.getCurMergeFn()) || mergeFn.getModulus() != st.getMergeFn().getModulus()) {
+            st.setMergeFn(mergeFn);
+        }
+    }
+
+    // EFFECTS: recomputes every internal node of a full-node snapshot from its children and returns the index of
+    // the first node that does not match, or NO_MISMATCH; reads the mapped chunks of the file, so the loaded tree
+    // may be updated meanwhile
+    private static int findMismatch(IntBuffer[] nodes, int capacity, int leafCount, MergeFunction mergeFn) {
+        for (int i = capacity + leafCount; i < 2 * capacity; i++) {
+            if (nodeAt(nodes, i) != mergeFn.identity()) {
+                return i;
+            }
+        }
+        for (int i = capacity - 1; i >= 1; i--) {
+            if (nodeAt(nodes, i) != mergeFn.merge(nodeAt(nodes, 2 * i), nodeAt(nodes, 2 * i + 1))) {
+                return i;
+            }
+        }
+        return NO_MISMATCH;
+    }
+
+    // EFFECTS: returns node i of the full-node snapshot mapped in the given chunks
+    private static int nodeAt(IntBuffer[] nodes, int i) {
+        return nodes[i >>> CHUNK_INT_SHIFT].get(i & CHUNK_INT_MASK);
+    }
+
+    // EFFECTS: returns the number of leaf slots of a segment tree over leafCount leaves, or 0 if leafCount is not
+    // a valid leaf count; a SegmentTree holds at most 1 << 29 leaf slots, since its 2 * capacity nodes are one array
+    private static int capacityFor(int leafCount) {
+        if (leafCount < 1 || leafCount > (1 << 29)) {
+            return 0;
+        }
+        return (leafCount == 1) ? 1 : Integer.highestOneBit(leafCount - 1) << 1;
+    }
+
+    // EFFECTS: reads len bytes starting at position into a little-endian buffer ready to be read;
+    // throws IOException if the file ends first
+    private ByteBuffer readFully(long position, int len) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(len).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException(source + " is truncated");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
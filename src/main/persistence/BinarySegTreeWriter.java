@@ -0,0 +1,160 @@
+package persistence;
+
+import model.SegmentTree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+import static java.lang.Math.min;
+
+/*
+ * Represents a writer that writes a segment tree to file as a compact binary snapshot
+ *
+ * Format (little-endian): magic, format version, leaf count, modulus and merge function name length as ints,
+ * the UTF-8 merge function name, then every leaf value as a packed int. Only leaves are stored; the reader
+ * rebuilds the internal nodes.
+ *
+ * A full-node snapshot (NODES_FORMAT_VERSION) has the same header but stores every node of the tree instead of
+ * the leaves, indexed like the tree, followed by the CRC32C of all preceding bytes. Loading it is a checksummed
+ * bulk read with no merge work.
+ *
+ * A delta snapshot (DELTA_FORMAT_VERSION) has the same header, then the checksum of the full-node snapshot its delta
+ * chain starts from (the base) as a long, then the index and value of every leaf changed since the base or the
+ * previous delta of the chain was written as pairs of ints, followed by the CRC32C of all preceding bytes. Deltas
+ * are applied in order on top of their base, and a delta taken from another base is skipped (see SnapshotCompactor).
+ * Only writeBase and writeDelta clear the dirty leaves of the tree, so other snapshots taken meanwhile (such as a
+ * TreeJournal checkpoint) do not break the chain.
+ *
+ * Every snapshot is written and forced under a temporary name next to the destination and then moved over it
+ * atomically, so a failure or crash while writing leaves the previous file in place.
+ */
+public class BinarySegTreeWriter {
+    public static final int MAGIC = 0x53454742; // "SEGB"
+    public static final int FORMAT_VERSION = 1;
+    public static final int NODES_FORMAT_VERSION = 2;
+    public static final int DELTA_FORMAT_VERSION = 3;
+    public static final int FIXED_HEADER_BYTES = 5 * Integer.BYTES;
+
+    private static final int CHUNK_VALUES = 1 << 16;
+
+    private String destination;
+
+    // EFFECTS: constructs writer to write to destination file
+    public BinarySegTreeWriter(String destination) {
+        this.destination = destination;
+    }
+
+    // EFFECTS: writes the binary snapshot of the segment tree to the destination file, replacing its contents;
+    // throws IOException if the file cannot be written
+    public void write(SegmentTree st) throws IOException {
+        writeSnapshot(st, FORMAT_VERSION, st.getLeafValues(), null);
+    }
+
+    // MODIFIES: st
+    // EFFECTS: writes the full-node snapshot of the segment tree to the destination file, replacing its contents;
+    // pending range updates of st are pushed to the leaves first; throws IOException if the file cannot be written
+    public void writeNodes(SegmentTree st) throws IOException {
+        writeSnapshot(st, NODES_FORMAT_VERSION, st.getNodeValues(), new CRC32C());
+    }
+
+    // MODIFIES: st
+    // EFFECTS: writes the full-node snapshot of the segment tree to the destination file as the base of a new delta
+    // chain and clears the dirty leaves of st; throws IOException if the file cannot be written
+    public void writeBase(SegmentTree st) throws IOException {
+        writeNodes(st);
+        st.clearDirtyLeaves();
+    }
+
+    // MODIFIES: st
+    // EFFECTS: writes a delta snapshot of the leaves of the segment tree changed since the base at baseSource or the
+    // previous delta of its chain to the destination file, replacing its contents, and clears the dirty leaves of
+    // st; throws IOException if the base is not a full-node snapshot or a file cannot be read or written
+    public void writeDelta(SegmentTree st, String baseSource) throws IOException {
+        long base = BinarySegTreeReader.snapshotChecksum(Paths.get(baseSource));
+        int[] dirty = st.getDirtyLeaves();
+        int[] pairs = new int[2 * dirty.length];
+        for (int i = 0; i < dirty.length; i++) {
+            pairs[2 * i] = dirty[i];
+            pairs[2 * i + 1] = st.getLeaf(dirty[i]).getVal();
+        }
+        writeSnapshot(st, DELTA_FORMAT_VERSION, pairs, new CRC32C(), base);
+        st.clearDirtyLeaves();
+    }
+
+    // EFFECTS: writes the header for the given snapshot (not delta) format version followed by values; if checksum
+    // is not null, every byte written is added to it and its value is appended at the end
+    private void writeSnapshot(SegmentTree st, int version, int[] values, CRC32C checksum) throws IOException {
+        writeSnapshot(st, version, values, checksum, 0L);
+    }
+
+    // EFFECTS: writes the header for the given format version, followed by base if it is a delta, and values to a
+    // temporary file, forces it and moves it over the destination; if checksum is not null, every byte written is
+    // added to it and its value is appended at the end
+    private void writeSnapshot(SegmentTree st, int version, int[] values, CRC32C checksum, long base)
+            throws IOException {
+        Path target = Paths.get(destination);
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(channel, header(st, version, base), checksum);
+            writeValues(channel, values, checksum);
+            if (checksum != null) {
+                ByteBuffer trailer = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                trailer.putInt((int) checksum.getValue()).flip();
+                writeFully(channel, trailer, null);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // EFFECTS: writes values to the channel as packed little-endian ints, in chunks of CHUNK_VALUES, adding them to
+    // checksum if it is not null
+    private void writeValues(FileChannel channel, int[] values, CRC32C checksum) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocateDirect(min(values.length, CHUNK_VALUES) * Integer.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        IntBuffer chunkInts = chunk.asIntBuffer();
+        for (int from = 0; from < values.length; from += CHUNK_VALUES) {
+            int count = min(CHUNK_VALUES, values.length - from);
+            chunkInts.clear();
+            chunkInts.put(values, from, count);
+            chunk.clear().limit(count * Integer.BYTES);
+            writeFully(channel, chunk, checksum);
+        }
+    }
+
+    // EFFECTS: returns the header for the given format version, followed by base if it is a delta, ready to be
+    // written
+    private static ByteBuffer header(SegmentTree st, int version, long base) {
+        byte[] name = st.getCurMergeFn().getBytes(StandardCharsets.UTF_8);
+        int baseBytes = (version == DELTA_FORMAT_VERSION) ? Long.BYTES : 0;
+        ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER_BYTES + name.length + baseBytes)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(version).putInt(st.getLeafCount()).putInt(st.getMergeFn().getModulus())
+                .putInt(name.length).put(name);
+        if (baseBytes > 0) {
+            header.putLong(base);
+        }
+        return header.flip();
+    }
+
+    // EFFECTS: writes every remaining byte of the buffer to the channel, adding them to checksum if it is not null
+    private void writeFully(FileChannel channel, ByteBuffer buffer, CRC32C checksum) throws IOException {
+        if (checksum != null) {
+            checksum.update(buffer.duplicate());
+        }
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
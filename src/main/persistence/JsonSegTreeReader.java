@@ -2,6 +2,7 @@ package persistence;
 
 import model.SegmentTree;
 import model.TreeNode;
+import model.merge.MergeFunction;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -9,7 +10,6 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.ArrayList;
 import java.util.stream.Stream;
 
 // Represents a reader that reads workroom from JSON data stored in file
@@ -46,17 +46,13 @@ public class JsonSegTreeReader {
         JSONArray leafNodesJsonArray = jsonObject.getJSONArray("leaves");
         String mergeFunc = jsonObject.getString("mergeFunc");
 
-        ArrayList<TreeNode> leaves = new ArrayList<>();
-        for (Object json : leafNodesJsonArray) {
-            JSONObject leafNode = (JSONObject) json;
-            leaves.add(parseTreeNode(leafNode));
+        int[] leaves = new int[leafNodesJsonArray.length()];
+        for (int i = 0; i < leaves.length; i++) {
+            JSONObject leafNode = leafNodesJsonArray.getJSONObject(i);
+            leaves[i] = parseTreeNode(leafNode).getVal();
         }
 
-        SegmentTree st = new SegmentTree(leaves);
-        if (!st.getCurMergeFn().equals(mergeFunc)) {
-            st.flipMergeFn();
-        }
-        return st;
+        return new SegmentTree(leaves, MergeFunction.fromName(mergeFunc));
     }
 
     // EFFECTS: parses tree node from JSON object and returns it
@@ -0,0 +1,47 @@
+package persistence;
+
+import model.SegmentTree;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+// Represents a compaction step that folds the delta snapshots written since a base snapshot back into it
+public class SnapshotCompactor {
+    private String baseSource;
+
+    // EFFECTS: constructs compactor for the full-node base snapshot in baseSource
+    public SnapshotCompactor(String baseSource) {
+        this.baseSource = baseSource;
+    }
+
+    // EFFECTS: reads the base snapshot, applies the given delta snapshots that were taken from it in order and
+    // returns the tree; deltas taken from another base, such as ones left behind by a compaction that did not
+    // finish, are skipped; throws IOException if a file cannot be read or is not a valid snapshot
+    public SegmentTree read(List<String> deltaSources) throws IOException {
+        SegmentTree st = new BinarySegTreeReader(baseSource).read();
+        long base = BinarySegTreeReader.snapshotChecksum(Paths.get(baseSource));
+        for (String delta : deltaSources) {
+            new BinarySegTreeReader(delta).applyDelta(st, base);
+        }
+        st.clearDirtyLeaves();
+        return st;
+    }
+
+    // EFFECTS: replaces the base snapshot with a full-node snapshot of the base and the given delta snapshots
+    // applied to it in order, then deletes the deltas, and returns the tree; the new base is written and forced
+    // under a temporary name and moved into place, so a failure leaves the base and deltas untouched, and deltas
+    // left behind by a crash after the move are skipped by the next compaction since they were taken from the old
+    // base; throws IOException if a file cannot be read or written
+    public SegmentTree compact(List<String> deltaSources) throws IOException {
+        SegmentTree st = read(deltaSources);
+
+        new BinarySegTreeWriter(baseSource).writeNodes(st);
+
+        for (String delta : deltaSources) {
+            Files.deleteIfExists(Paths.get(delta));
+        }
+        return st;
+    }
+}
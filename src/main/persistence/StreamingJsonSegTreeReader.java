@@ -0,0 +1,298 @@
+package persistence;
+
+import model.SegmentTree;
+import model.merge.MergeFunction;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Represents a reader that reads a segment tree from the JSON written by JsonSegTreeWriter without building the
+// whole text or a JSON DOM: the file is tokenized as it streams through a fixed-size buffer and every leaf "value"
+// goes straight into the int array the tree is built from, so peak memory stays proportional to the tree.
+// Other keys (such as a leaf's "color") are skipped, and keys may come in any order
+public class StreamingJsonSegTreeReader {
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final int INITIAL_LEAVES = 16;
+
+    private String source;
+    private FileChannel channel;
+    private ByteBuffer buffer;
+
+    // EFFECTS: constructs reader to read from source file
+    public StreamingJsonSegTreeReader(String source) {
+        this.source = source;
+    }
+
+    // EFFECTS: reads the segment tree from file and returns it;
+    // throws IOException if the file cannot be read or is not a segment tree in JSON
+    public SegmentTree read() throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(source), StandardOpenOption.READ)) {
+            channel = ch;
+            buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+            buffer.limit(0);
+            return parseSegTree();
+        } catch (IllegalArgumentException e) {
+            throw new IOException(source + " has an unknown merge function", e);
+        } finally {
+            channel = null;
+            buffer = null;
+        }
+    }
+
+    // EFFECTS: parses the top level object, collecting the leaves and the merge function, and builds the tree
+    private SegmentTree parseSegTree() throws IOException {
+        int[] leaves = null;
+        String mergeFunc = null;
+
+        expect('{');
+        boolean more = peekNonWhitespace() != '}';
+        while (more) {
+            String key = readString();
+            expect(':');
+            if (key.equals("leaves")) {
+                leaves = parseLeaves();
+            } else if (key.equals("mergeFunc")) {
+                mergeFunc = readString();
+            } else {
+                skipValue();
+            }
+            more = nextSeparator('}');
+        }
+
+        if (leaves == null || leaves.length == 0 || mergeFunc == null) {
+            throw new IOException(source + " does not hold a segment tree");
+        }
+        return new SegmentTree(leaves, MergeFunction.fromName(mergeFunc));
+    }
+
+    // EFFECTS: parses the array of leaf objects and returns their values
+    private int[] parseLeaves() throws IOException {
+        int[] leaves = new int[INITIAL_LEAVES];
+        int leafCount = 0;
+        expect('[');
+        boolean more = peekNonWhitespace() != ']';
+        while (more) {
+            if (leafCount == leaves.length) {
+                leaves = Arrays.copyOf(leaves, 2 * leafCount);
+            }
+            leaves[leafCount++] = parseLeafValue();
+            more = nextSeparator(']');
+        }
+        next();
+        return (leafCount == leaves.length) ? leaves : Arrays.copyOf(leaves, leafCount);
+    }
+
+    // EFFECTS: parses one leaf object and returns its value
+    private int parseLeafValue() throws IOException {
+        Integer value = null;
+        expect('{');
+        boolean more = peekNonWhitespace() != '}';
+        while (more) {
+            String key = readString();
+            expect(':');
+            if (key.equals("value")) {
+                value = readInt();
+            } else {
+                skipValue();
+            }
+            more = nextSeparator('}');
+        }
+        if (value == null) {
+            throw new IOException(source + " has a leaf without a value");
+        }
+        return value;
+    }
+
+    // EFFECTS: consumes a ',' and returns true, or consumes nothing and returns false before the closing char
+    private boolean nextSeparator(char close) throws IOException {
+        int c = peekNonWhitespace();
+        if (c == ',') {
+            next();
+            return true;
+        }
+        if (c != close) {
+            throw syntaxError("',' or '" + close + "'");
+        }
+        if (close == '}') {
+            next();
+        }
+        return false;
+    }
+
+    // EFFECTS: reads an integer literal
+    private int readInt() throws IOException {
+        boolean negative = peekNonWhitespace() == '-';
+        if (negative) {
+            next();
+        }
+        long value = negative ? -readDigits() : readDigits();
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException(source + " has a value that does not fit in an int");
+        }
+        return (int) value;
+    }
+
+    // EFFECTS: reads the digits of an integer literal without its sign and returns their value;
+    // throws IOException if they are not an integer or the value is beyond an int
+    private long readDigits() throws IOException {
+        int c = peek();
+        if (c < '0' || c > '9') {
+            throw syntaxError("an integer");
+        }
+        long value = 0;
+        while (c >= '0' && c <= '9') {
+            value = 10 * value + (next() - '0');
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw new IOException(source + " has a value that does not fit in an int");
+            }
+            c = peek();
+        }
+        if (c == '.' || c == 'e' || c == 'E') {
+            throw syntaxError("an integer");
+        }
+        return value;
+    }
+
+    // EFFECTS: reads a string literal, decoding escapes and UTF-8
+    private String readString() throws IOException {
+        expect('"');
+        StringBuilder result = new StringBuilder();
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        for (int c = next(); c != '"'; c = next()) {
+            if (c == '\\') {
+                result.append(raw.toString(StandardCharsets.UTF_8));
+                raw.reset();
+                result.append(readEscape());
+            } else {
+                raw.write(c);
+            }
+        }
+        return result.append(raw.toString(StandardCharsets.UTF_8)).toString();
+    }
+
+    // EFFECTS: reads the rest of an escape sequence after the backslash and returns the escaped char
+    private char readEscape() throws IOException {
+        int c = next();
+        switch (c) {
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                return readHexEscape();
+            default:
+                return (char) c;
+        }
+    }
+
+    // EFFECTS: reads the 4 hex digits of a unicode escape and returns the escaped char
+    private char readHexEscape() throws IOException {
+        int code = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(next(), 16);
+            if (digit < 0) {
+                throw syntaxError("a hex digit");
+            }
+            code = 16 * code + digit;
+        }
+        return (char) code;
+    }
+
+    // EFFECTS: skips any JSON value without keeping it
+    private void skipValue() throws IOException {
+        int c = peekNonWhitespace();
+        if (c == '"') {
+            next();
+            for (int d = next(); d != '"'; d = next()) {
+                if (d == '\\') {
+                    next();
+                }
+            }
+        } else if (c == '{' || c == '[') {
+            skipContainer(c == '{');
+        } else {
+            // numbers, true, false and null
+            while (c != ',' && c != '}' && c != ']' && !Character.isWhitespace(c)) {
+                next();
+                c = peek();
+            }
+        }
+    }
+
+    // EFFECTS: skips an object (or an array if not object) starting at the next char without keeping it
+    private void skipContainer(boolean object) throws IOException {
+        char close = object ? '}' : ']';
+        next();
+        boolean more = peekNonWhitespace() != close;
+        while (more) {
+            if (object) {
+                readString();
+                expect(':');
+            }
+            skipValue();
+            more = nextSeparator(close);
+        }
+        if (!object) {
+            next();
+        }
+    }
+
+    // EFFECTS: consumes the next non-whitespace char and throws IOException unless it is the expected one
+    private void expect(char expected) throws IOException {
+        if (peekNonWhitespace() != expected) {
+            throw syntaxError("'" + expected + "'");
+        }
+        next();
+    }
+
+    // EFFECTS: skips whitespace and returns the next char without consuming it
+    private int peekNonWhitespace() throws IOException {
+        int c = peek();
+        while (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+            next();
+            c = peek();
+        }
+        return c;
+    }
+
+    // EFFECTS: returns the next byte without consuming it; throws IOException at the end of the file
+    private int peek() throws IOException {
+        if (!buffer.hasRemaining()) {
+            buffer.clear();
+            int read;
+            do {
+                read = channel.read(buffer);
+            } while (read == 0);
+            buffer.flip();
+            if (read < 0) {
+                throw new IOException(source + " ends unexpectedly");
+            }
+        }
+        return buffer.get(buffer.position()) & 0xFF;
+    }
+
+    // EFFECTS: consumes and returns the next byte; throws IOException at the end of the file
+    private int next() throws IOException {
+        int c = peek();
+        buffer.position(buffer.position() + 1);
+        return c;
+    }
+
+    // EFFECTS: returns the exception for a file that does not hold what was expected at the current position
+    private IOException syntaxError(String expected) throws IOException {
+        return new IOException(source + " is not valid JSON: expected " + expected + " but found '"
+                + (char) peek() + "'");
+    }
+}
@@ -0,0 +1,512 @@
+package persistence;
+
+import model.SegmentTree;
+import model.SegmentTreeListener;
+import model.merge.MergeFunction;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Represents an append-only write-ahead journal of the changes made to a segment tree
+ *
+ * Format (little-endian): magic and format version as ints and the checksum of the full-node snapshot the journal
+ * continues from (NO_BASE if it starts with a BUILD record instead) as a long, then one record per change: a type
+ * byte followed by its operands. A BUILD record holds a whole tree (leaf count, modulus, merge function name and
+ * leaves) and starts the history over.
+ *
+ * Records are buffered in memory and written and forced to disk together (group commit) every commit interval on
+ * a background thread, so a crash loses at most the changes made since the last commit. Recovery loads the last
+ * snapshot and replays the journal on top of it; a record torn by a crash at the end of the journal is ignored.
+ */
+public class TreeJournal implements SegmentTreeListener, Closeable {
+    public static final int MAGIC = 0x5345474A; // "SEGJ"
+    public static final int FORMAT_VERSION = 1;
+    public static final int HEADER_BYTES = 2 * Integer.BYTES + Long.BYTES;
+    public static final long NO_BASE = -1L;
+
+    private static final byte BUILD = 1;
+    private static final byte LEAF_UPDATED = 2;
+    private static final byte LEAF_APPENDED = 3;
+    private static final byte RANGE_ADDED = 4;
+    private static final byte RANGE_ASSIGNED = 5;
+    private static final byte MERGE_FN_CHANGED = 6;
+
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final int READ_BUFFER_BYTES = 1 << 16;
+
+    private final String destination;
+    private final long commitIntervalMillis;
+    private final ByteBuffer buffer; // Holds the records made since they were last written to the channel
+    private FileChannel channel;
+    private ScheduledExecutorService committer; // Commits the journal every commitIntervalMillis, null if eager
+    private SegmentTree segTree; // Tracks the tree being journaled
+    private IOException failure; // Holds the error that made the journal fail, null if it has not failed
+
+    // EFFECTS: constructs journal to write to destination file, committing the buffered records every
+    // commitIntervalMillis; with an interval of 0 every record is committed as soon as it is made
+    public TreeJournal(String destination, long commitIntervalMillis) {
+        this.destination = destination;
+        this.commitIntervalMillis = commitIntervalMillis;
+        buffer = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // MODIFIES: this, st
+    // EFFECTS: starts the journal over with a BUILD record of st, committed before returning, and journals every
+    // later change to st instead of the previously journaled tree; throws IOException if the journal cannot be
+    // written
+    public synchronized void attach(SegmentTree st) throws IOException {
+        detach();
+        startOver(NO_BASE, st);
+        startCommitter();
+        segTree = st;
+        st.setListener(this);
+    }
+
+    // REQUIRES: a tree is attached; no other thread changes the attached tree meanwhile
+    // MODIFIES: this, the attached tree
+    // EFFECTS: writes a full-node snapshot of the attached tree to snapshotDestination, replacing it atomically,
+    // and starts the journal over from that snapshot; throws IOException if either file cannot be written
+    public synchronized void checkpoint(String snapshotDestination) throws IOException {
+        Path snapshot = Paths.get(snapshotDestination);
+        new BinarySegTreeWriter(snapshotDestination).writeNodes(segTree);
+
+        // A crash before the journal starts over leaves one whose base is not the new snapshot, which recover skips
+        startOver(BinarySegTreeReader.snapshotChecksum(snapshot), null);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes the buffered records to the journal and forces them to disk; the force happens outside the
+    // lock so changes can keep being journaled meanwhile; throws IOException if the journal cannot be written or
+    // has failed since it was last started over, in which case the changes made since the failure are not in it
+    public void commit() throws IOException {
+        FileChannel committing;
+        synchronized (this) {
+            if (channel == null) {
+                return;
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            flushBuffer();
+            committing = channel;
+        }
+        try {
+            committing.force(false);
+        } catch (ClosedChannelException e) {
+            // The journal was started over or closed meanwhile, which forced everything written to it
+            synchronized (this) {
+                if (channel == committing) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // MODIFIES: this, the attached tree
+    // EFFECTS: stops journaling the attached tree, commits the buffered records and closes the journal;
+    // throws IOException if the journal cannot be written or has failed since it was last started over
+    @Override
+    public void close() throws IOException {
+        stopCommitter();
+        synchronized (this) {
+            if (channel == null) {
+                return;
+            }
+            detach();
+            try {
+                if (failure == null) {
+                    flushBuffer();
+                    channel.force(false);
+                }
+            } finally {
+                channel.close();
+                channel = null;
+                committer = null;
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void leafUpdated(int valInd, int val) {
+        if (hasRoom(1 + 2 * Integer.BYTES)) {
+            buffer.put(LEAF_UPDATED).putInt(valInd).putInt(val);
+            recorded();
+        }
+    }
+
+    @Override
+    public synchronized void leafAppended(int val) {
+        if (hasRoom(1 + Integer.BYTES)) {
+            buffer.put(LEAF_APPENDED).putInt(val);
+            recorded();
+        }
+    }
+
+    @Override
+    public synchronized void rangeAdded(int l, int r, int delta) {
+        if (hasRoom(1 + 3 * Integer.BYTES)) {
+            buffer.put(RANGE_ADDED).putInt(l).putInt(r).putInt(delta);
+            recorded();
+        }
+    }
+
+    @Override
+    public synchronized void rangeAssigned(int l, int r, int val) {
+        if (hasRoom(1 + 3 * Integer.BYTES)) {
+            buffer.put(RANGE_ASSIGNED).putInt(l).putInt(r).putInt(val);
+            recorded();
+        }
+    }
+
+    @Override
+    public synchronized void mergeFnChanged(MergeFunction mergeFn) {
+        byte[] name = mergeFn.getName().getBytes(StandardCharsets.UTF_8);
+        if (hasRoom(1 + 2 * Integer.BYTES + name.length)) {
+            buffer.put(MERGE_FN_CHANGED).putInt(mergeFn.getModulus()).putInt(name.length).put(name);
+            recorded();
+        }
+    }
+
+    // EFFECTS: returns the tree recovered from the full-node snapshot at snapshotSource, if that file exists, with
+    // the journal at journalSource replayed on top of it; a journal that does not continue from that snapshot
+    // is skipped unless it starts with its own BUILD record; the returned tree has no listener; throws IOException
+    // if neither file holds a tree or a file is corrupt
+    public static SegmentTree recover(String snapshotSource, String journalSource) throws IOException {
+        SegmentTree st = null;
+        long snapshotBase = NO_BASE;
+        Path snapshot = Paths.get(snapshotSource);
+        if (Files.exists(snapshot)) {
+            st = new BinarySegTreeReader(snapshotSource).read();
+            snapshotBase = BinarySegTreeReader.snapshotChecksum(snapshot);
+        }
+
+        if (Files.exists(Paths.get(journalSource))) {
+            st = replayJournal(journalSource, snapshotBase, st);
+        }
+        if (st == null) {
+            throw new IOException("Neither " + snapshotSource + " nor " + journalSource + " holds a segment tree");
+        }
+        return st;
+    }
+
+    // MODIFIES: st
+    // EFFECTS: replays the journal at journalSource on top of st (null if there is no snapshot) and returns the
+    // resulting tree, or returns st unchanged if the journal does not continue from snapshotBase; throws
+    // IOException if the file is not a journal or is corrupt
+    private static SegmentTree replayJournal(String journalSource, long snapshotBase, SegmentTree st)
+            throws IOException {
+        try (FileChannel in = FileChannel.open(Paths.get(journalSource), StandardOpenOption.READ)) {
+            ByteBuffer records = ByteBuffer.allocate(READ_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            records.limit(0);
+            if (!fill(in, records, HEADER_BYTES) || records.getInt() != MAGIC) {
+                throw new IOException(journalSource + " is not a segment tree journal");
+            }
+            int version = records.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported segment tree journal version " + version);
+            }
+            long base = records.getLong();
+            return (base == NO_BASE || base == snapshotBase) ? replay(in, records, st, journalSource) : st;
+        } catch (IllegalArgumentException e) {
+            throw new IOException(journalSource + " has an unknown merge function", e);
+        }
+    }
+
+    // MODIFIES: st
+    // EFFECTS: applies every complete record left in the journal to st, or to the tree of the latest BUILD
+    // record, and returns the resulting tree; stops at the first torn or unknown record
+    private static SegmentTree replay(FileChannel in, ByteBuffer records, SegmentTree st, String journalSource)
+            throws IOException {
+        while (fill(in, records, 1)) {
+            byte type = records.get();
+            if (type == BUILD) {
+                SegmentTree built = replayBuild(in, records);
+                if (built == null) {
+                    return st;
+                }
+                st = built;
+            } else if (st == null) {
+                throw new IOException(journalSource + " changes a tree it does not hold");
+            } else if (!replayChange(in, records, type, st)) {
+                return st;
+            }
+        }
+        return st;
+    }
+
+    // EFFECTS: returns the tree of the BUILD record whose type byte was just read, or null if the record is torn
+    private static SegmentTree replayBuild(FileChannel in, ByteBuffer records) throws IOException {
+        if (!fill(in, records, 2 * Integer.BYTES)) {
+            return null;
+        }
+        int leafCount = records.getInt();
+        int modulus = records.getInt();
+        String name = readName(in, records);
+        if (name == null || leafCount < 1) {
+            return null;
+        }
+        int[] leaves = new int[leafCount];
+        for (int i = 0; i < leafCount; i++) {
+            if (!fill(in, records, Integer.BYTES)) {
+                return null;
+            }
+            leaves[i] = records.getInt();
+        }
+        return new SegmentTree(leaves, MergeFunction.fromName(name, modulus));
+    }
+
+    // MODIFIES: st
+    // EFFECTS: applies the change record of the given type to st and returns true, or returns false if the record
+    // is torn or of an unknown type
+    private static boolean replayChange(FileChannel in, ByteBuffer records, byte type, SegmentTree st)
+            throws IOException {
+        switch (type) {
+            case LEAF_UPDATED:
+                if (!fill(in, records, 2 * Integer.BYTES)) {
+                    return false;
+                }
+                st.updateVal(records.getInt(), records.getInt());
+                return true;
+            case LEAF_APPENDED:
+                if (!fill(in, records, Integer.BYTES)) {
+                    return false;
+                }
+                st.append(records.getInt());
+                return true;
+            case RANGE_ADDED:
+            case RANGE_ASSIGNED:
+                return replayRange(in, records, type, st);
+            case MERGE_FN_CHANGED:
+                return replayMergeFn(in, records, st);
+            default:
+                return false;
+        }
+    }
+
+    // MODIFIES: st
+    // EFFECTS: applies the RANGE_ADDED or RANGE_ASSIGNED record of the given type to st and returns true, or
+    // returns false if the record is torn
+    private static boolean replayRange(FileChannel in, ByteBuffer records, byte type, SegmentTree st)
+            throws IOException {
+        if (!fill(in, records, 3 * Integer.BYTES)) {
+            return false;
+        }
+        int l = records.getInt();
+        int r = records.getInt();
+        int val = records.getInt();
+        if (type == RANGE_ADDED) {
+            st.rangeAdd(l, r, val);
+        } else {
+            st.rangeAssign(l, r, val);
+        }
+        return true;
+    }
+
+    // MODIFIES: st
+    // EFFECTS: applies the MERGE_FN_CHANGED record to st and returns true, or returns false if the record is torn
+    private static boolean replayMergeFn(FileChannel in, ByteBuffer records, SegmentTree st) throws IOException {
+        if (!fill(in, records, Integer.BYTES)) {
+            return false;
+        }
+        int modulus = records.getInt();
+        String name = readName(in, records);
+        if (name == null) {
+            return false;
+        }
+        st.setMergeFn(MergeFunction.fromName(name, modulus));
+        return true;
+    }
+
+    // EFFECTS: reads a merge function name preceded by its length, or returns null if it is torn
+    private static String readName(FileChannel in, ByteBuffer records) throws IOException {
+        if (!fill(in, records, Integer.BYTES)) {
+            return null;
+        }
+        int nameLen = records.getInt();
+        if (nameLen < 0 || nameLen > records.capacity() || !fill(in, records, nameLen)) {
+            return null;
+        }
+        byte[] name = new byte[nameLen];
+        records.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    // MODIFIES: records
+    // EFFECTS: reads from the channel until records has at least count bytes remaining and returns true, or
+    // returns false if the channel ends first
+    private static boolean fill(FileChannel in, ByteBuffer records, int count) throws IOException {
+        if (records.remaining() >= count) {
+            return true;
+        }
+        records.compact();
+        while (records.position() < count) {
+            if (in.read(records) < 0) {
+                records.flip();
+                return false;
+            }
+        }
+        records.flip();
+        return true;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: starts the background commits if they are not running yet
+    private void startCommitter() {
+        if (committer == null && commitIntervalMillis > 0) {
+            committer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "tree-journal-commit");
+                thread.setDaemon(true);
+                return thread;
+            });
+            committer.scheduleWithFixedDelay(this::backgroundCommit, commitIntervalMillis, commitIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: stops the background commits and waits for a running one to finish
+    private void stopCommitter() {
+        if (committer != null) {
+            committer.shutdown();
+            try {
+                committer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: commits the journal, marking it failed if that fails so the next commit or close reports it
+    private void backgroundCommit() {
+        try {
+            commit();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    // MODIFIES: this, the attached tree
+    // EFFECTS: stops journaling the attached tree if this journal is still its listener
+    private void detach() {
+        if (segTree != null && segTree.getListener() == this) {
+            segTree.setListener(null);
+        }
+        segTree = null;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: replaces the journal with one that continues from base, dropping the buffered records; if build is
+    // not null the new journal starts with a BUILD record of it; the new journal is written and forced under a
+    // temporary name and then moved into place, so a crash leaves either the old journal or the new one
+    private void startOver(long base, SegmentTree build) throws IOException {
+        Path journal = Paths.get(destination);
+        Path tmp = journal.resolveSibling(journal.getFileName() + ".tmp");
+        if (channel != null) {
+            channel.close();
+        }
+        buffer.clear();
+        failure = null;
+
+        channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(base);
+        if (build != null) {
+            putBuild(build);
+        }
+        flushBuffer();
+        channel.force(false);
+        channel.close();
+
+        Files.move(tmp, journal, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        channel = FileChannel.open(journal, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+    }
+
+    // MODIFIES: this
+    // EFFECTS: buffers a BUILD record holding the whole of the given tree
+    private void putBuild(SegmentTree build) throws IOException {
+        byte[] name = build.getCurMergeFn().getBytes(StandardCharsets.UTF_8);
+        int[] leaves = build.getLeafValues();
+        makeRoom(1 + 3 * Integer.BYTES + name.length);
+        buffer.put(BUILD).putInt(leaves.length).putInt(build.getMergeFn().getModulus()).putInt(name.length)
+                .put(name);
+        for (int leaf : leaves) {
+            makeRoom(Integer.BYTES);
+            buffer.putInt(leaf);
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: makes room for a record of the given size, writing the buffered records to the journal if needed
+    private void makeRoom(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flushBuffer();
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: makes room for a record of the given size and returns true, or returns false if the journal has
+    // failed, marking it failed if making room fails; never throws, since the tree has already changed
+    private boolean hasRoom(int bytes) {
+        if (failure != null) {
+            return false;
+        }
+        try {
+            makeRoom(bytes);
+            return true;
+        } catch (IOException e) {
+            fail(e);
+            return false;
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: commits the record that was just made if every record is committed as it is made, marking the
+    // journal failed if that fails
+    private void recorded() {
+        if (commitIntervalMillis <= 0) {
+            try {
+                commit();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: marks the journal failed with the given error unless it has failed already; no record is journaled
+    // from then on and the next commit or close throws the error
+    private synchronized void fail(IOException e) {
+        if (failure == null) {
+            failure = new IOException("Journal " + destination + " failed; later changes were not journaled", e);
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes every buffered record to the journal
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -3,6 +3,7 @@ package renderer;
 import model.RenderTreeNode;
 import model.SegmentTree;
 import model.TreeNode;
+import model.TreeTrace;
 
 import java.util.LinkedList;
 import java.util.Queue;
@@ -16,8 +17,8 @@ public class ConsoleTreeRenderer {
     // Tracks the current segment tree to be rendered
     private SegmentTree segTree;
 
-    // Stores the rendering of the given segment tree
-    private static String[] treeRender = new String[MAX_TREE_NODES];
+    // Stores the rendering of the given segment tree, sized for the tree's current height
+    private String[] treeRender = new String[0];
 
     /*
      * REQUIRES: Complete binary segment tree
@@ -31,11 +32,23 @@ public class ConsoleTreeRenderer {
     /*
      * Renders a tree starting from the leaves and stores it; Following this, a BFS is run to combine the renders
      * MODIFIES: this
-     * EFFECTS: treeRender stores the tree render for the subtree starting at the given node
+     * EFFECTS: treeRender stores the tree render for the subtree starting at the given node, covering every
+     *          leaf slot of the tree so a grown tree is rendered at its new height;
+     *          nodes are colored from the tree's trace, which is cleared once it has been rendered
      */
     public String render() {
-        renderTree(0, MAX_LEAVES - 1, TREE_ROOT_IND);
-        return combineNodeRenders();
+        int capacity = segTree.getCapacity();
+        if (treeRender.length != 2 * capacity) {
+            treeRender = new String[2 * capacity];
+        }
+        renderTree(0, capacity - 1, TREE_ROOT_IND);
+        String renderedString = combineNodeRenders();
+
+        TreeTrace trace = segTree.getTrace();
+        if (trace != null) {
+            trace.clear();
+        }
+        return renderedString;
     }
 
     /*
@@ -46,7 +59,7 @@ public class ConsoleTreeRenderer {
         StringBuilder renderedString = new StringBuilder();
 
         Queue<RenderTreeNode> queue = new LinkedList<>();
-        queue.add(new RenderTreeNode(1, 0, MAX_LEAVES - 1));
+        queue.add(new RenderTreeNode(1, 0, segTree.getCapacity() - 1));
 
         // Run BFS to combine the renders
         while (!queue.isEmpty()) {
@@ -76,8 +89,8 @@ public class ConsoleTreeRenderer {
 
     /*
      * Renders a subtree for the given tree node
-     * REQUIRES: Valid range (l r) between 0 and MAX_LEAVES-1;
-     *           Valid treeInd between 0 and MAX_TREE_NODES-1
+     * REQUIRES: Valid range (l r) between 0 and segTree.getCapacity()-1;
+     *           Valid treeInd between 1 and 2 * segTree.getCapacity() - 1
      * MODIFIES: this
      * EFFECTS: Runs a post-order DFS to render the Subtrees and then renders the currentNode;
      *          updates treeRender to store the render for the current node;
@@ -100,7 +113,7 @@ public class ConsoleTreeRenderer {
 
     /*
      * Renders a single node
-     * REQUIRES: Valid treeInd between 0 and MAX_TREE_NODES-1
+     * REQUIRES: Valid treeInd between 1 and 2 * segTree.getCapacity() - 1
      *           curHeight should be 0 or positive
      * MODIFIES: this
      * EFFECTS: Renders the current node with padding based on the given height;
@@ -111,13 +124,10 @@ public class ConsoleTreeRenderer {
 
         // Handle leaves without adding any padding
         if (curHeight == 0) {
-            TreeNode curSegTreeNode = segTree.getTreeNodeByInd(treeInd);
-            treeRender[treeInd] = getFormattedNodeVal(curSegTreeNode) + pad(NODE_LEN, ' ');
+            treeRender[treeInd] = getFormattedNodeVal(treeInd) + pad(NODE_LEN, ' ');
             return;
         }
 
-        TreeNode curSegTreeNode = segTree.getTreeNodeByInd(treeInd);
-
         // Get number of nodes / 2 for the previous height, for padding
         int cntPrevNodes = (1 << (curHeight - 1)) >> 1;
         int paddingLen = cntPrevNodes * NODE_LEN
@@ -125,7 +135,7 @@ public class ConsoleTreeRenderer {
                 + NODE_LEN / 2;
 
         curNode.append(pad(paddingLen, ' ') + '/' + pad(paddingLen, '-'));
-        curNode.append(getFormattedNodeVal(curSegTreeNode));
+        curNode.append(getFormattedNodeVal(treeInd));
         curNode.append(pad(paddingLen, '-') + '\\' + pad(paddingLen, ' '));
         curNode.append(pad(NODE_LEN, ' '));
 
@@ -150,17 +160,20 @@ public class ConsoleTreeRenderer {
      * Centers a node value in the Node render
      * EFFECTS: Places a node value in the center, in a string with a maximum length of NODE_LEN
      *          with whitespaces for padding;
-     *          The nodes are also prefixed with colors from the node's property
+     *          The nodes are also prefixed with colors from the tree's trace
      */
-    private String getFormattedNodeVal(TreeNode segTreeNode) {
-        String strNodeVal = Integer.toString(segTreeNode.getVal());
+    private String getFormattedNodeVal(int treeInd) {
+        String strNodeVal = Integer.toString(segTree.getTreeNodeByInd(treeInd).getVal());
         int valLen = strNodeVal.length();
 
         int remPadding = NODE_LEN - valLen;
         int leftPadding = remPadding / 2;
         int rightPadding = remPadding - leftPadding;
 
-        return segTreeNode.getAndResetColor() + pad(leftPadding, ' ')
+        TreeTrace trace = segTree.getTrace();
+        String color = (trace == null) ? TreeNode.DEFAULT_COLOR : trace.getColor(treeInd);
+
+        return color + pad(leftPadding, ' ')
                 + strNodeVal + pad(rightPadding, ' ')
                 + TreeNode.ANSI_RESET;
     }
@@ -17,6 +17,15 @@ public class TreeConfig {
     // Represents the default merge function being used
     public static final String DEFAULT_MERGE_FN = "Addition";
 
+    // Represents the max number of leaf values written to the event log when a tree is generated
+    public static final int MAX_LOGGED_LEAVES = 64;
+
+    // Represents the min number of ranges in a batch query before the queries are run in parallel
+    public static final int PARALLEL_QUERY_THRESHOLD = 4096;
+
+    // Represents the max number of leaves in a subtree that is built sequentially instead of in parallel
+    public static final int PARALLEL_BUILD_THRESHOLD = 1 << 15;
+
     // Represents the MOD to be used to prevent overflow
     public static final int MOD = (int) 1e9 + 7;
 }
@@ -4,6 +4,7 @@ import model.Event;
 import model.EventLog;
 import model.SegmentTree;
 import model.TreeNode;
+import model.TreeTrace;
 import persistence.JsonSegTreeReader;
 import persistence.JsonSegTreeWriter;
 
@@ -21,6 +22,7 @@ public class SegTreeApp extends JPanel implements ActionListener, ItemListener {
 
     // Tracks the current segment tree to be rendered
     private SegmentTree segTree;
+    private TreeTrace trace = new TreeTrace(); // Records the operations on segTree for the renderer
 
     private TreeRenderer guiTreeRenderer;
 
@@ -281,6 +283,7 @@ public class SegTreeApp extends JPanel implements ActionListener, ItemListener {
             }
 
             segTree = new SegmentTree(intValues);
+            segTree.setTrace(trace);
             guiTreeRenderer.updateAndRenderSegTree(segTree);
         } else if (UPDATE_CARD_STR.equals(command)) {
             int updatePos = Integer.parseInt(updateValuePosTF.getText());
@@ -309,6 +312,7 @@ public class SegTreeApp extends JPanel implements ActionListener, ItemListener {
         } else if (LOAD_MENU_STR.equals(command)) {
             try {
                 segTree = jsonReader.read();
+                segTree.setTrace(trace);
                 guiTreeRenderer.updateAndRenderSegTree(segTree);
             } catch (IOException err) {
                 System.out.println("\n Unable to read from file: " + SEGTREE_JSON_STORE + " :(");
@@ -336,6 +340,7 @@ public class SegTreeApp extends JPanel implements ActionListener, ItemListener {
             arr.add(new TreeNode(i + 1));
         }
         this.segTree = new SegmentTree(arr);
+        segTree.setTrace(trace);
     }
 
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import model.Event;
 import model.EventLog;
 import model.SegmentTree;
 import model.TreeNode;
+import model.TreeTrace;
 import persistence.JsonSegTreeReader;
 import persistence.JsonSegTreeWriter;
 import renderer.ConsoleTreeRenderer;
@@ -19,6 +20,7 @@ import static resources.TreeConfig.MAX_LEAVES;
 public class SegTreeConsoleApp {
     private static final String SEGTREE_JSON_STORE = "./data/segTreeFoundation.json";
     private SegmentTree segTree;
+    private TreeTrace trace = new TreeTrace(); // Records the operations on segTree for the renderer
     private ConsoleTreeRenderer treeRenderer;
     private Scanner userInput;
     private JsonSegTreeWriter jsonWriter;
@@ -106,10 +108,17 @@ public class SegTreeConsoleApp {
         System.out.println("\t c -> Use a different merge function to compute the tree");
         System.out.println("\t d -> Save the current segment tree (Overrides the previously saved tree state)");
         System.out.println("\t e -> Initialize a new segment tree");
+        System.out.println("\t f -> Append a value to the initial array");
         System.out.println("\t q -> Quit");
 
-        String curOption = userInput.next().toLowerCase();
+        return processTreeFunctionCommand(userInput.next().toLowerCase());
+    }
 
+    /*
+     * MODIFIES: this
+     * EFFECTS: Performs the tree function selected by the given menu option; returns false if the user quit
+     */
+    private boolean processTreeFunctionCommand(String curOption) {
         if (curOption.equals("a")) {
             displayRangeFunctionMenu();
         } else if (curOption.equals("b")) {
@@ -120,6 +129,8 @@ public class SegTreeConsoleApp {
             saveCurrentTreeState();
         } else if (curOption.equals("e")) {
             displayTreeSetupMenu();
+        } else if (curOption.equals("f")) {
+            displayAppendValueMenu();
         } else if (curOption.equals("q")) {
             return false;
         }
@@ -155,14 +166,15 @@ public class SegTreeConsoleApp {
         }
 
         segTree = new SegmentTree(intValues);
+        segTree.setTrace(trace);
     }
 
     /*
      * EFFECTS: Allows user to query range sum/product and returns the result
      */
     private void displayRangeFunctionMenu() {
-        System.out.println("\nEnter a range between 1 and " + MAX_LEAVES + " (Format: l r) separated by space,"
-                + " to query the sum/product for: ");
+        System.out.println("\nEnter a range between 1 and " + segTree.getLeafCount()
+                + " (Format: l r) separated by space, to query the sum/product for: ");
 
         String[] values = userInput.next().split(" ");
         try {
@@ -172,7 +184,7 @@ public class SegTreeConsoleApp {
             left--;
             right--;
 
-            if (!(left >= 0 && right < MAX_LEAVES && left <= right)) {
+            if (!(left >= 0 && right < segTree.getLeafCount() && left <= right)) {
                 throw new Exception();
             }
 
@@ -202,6 +214,18 @@ public class SegTreeConsoleApp {
         System.out.println("\n Updated value!");
     }
 
+    /*
+     * MODIFIES: this
+     * EFFECTS: Gets a value from the user and appends it to the tree as a new leaf, growing the tree if needed
+     */
+    private void displayAppendValueMenu() {
+        System.out.println(("\nEnter the value you would like to append: "));
+        int appendVal = userInput.nextInt();
+
+        segTree.append(appendVal);
+        System.out.println("\n Appended value!");
+    }
+
     /*
      * MODIFIES: this
      * EFFECTS: Toggles the merge function used in the tree based on the user input
@@ -234,6 +258,7 @@ public class SegTreeConsoleApp {
     private void loadRecentTreeState() {
         try {
             segTree = jsonReader.read();
+            segTree.setTrace(trace);
             System.out.println("\n Loaded saved tree successfully!");
         } catch (IOException e) {
             System.out.println("\n Unable to read from file: " + SEGTREE_JSON_STORE + " :(");
@@ -250,6 +275,7 @@ public class SegTreeConsoleApp {
             arr.add(new TreeNode(i + 1));
         }
         segTree = new SegmentTree(arr);
+        segTree.setTrace(trace);
     }
 
     /*
@@ -2,7 +2,7 @@ package ui;
 
 import model.RenderTreeNode;
 import model.SegmentTree;
-import model.TreeNode;
+import model.TreeTrace;
 
 import javax.swing.*;
 import java.util.ArrayList;
@@ -18,8 +18,12 @@ public class TreeRenderer extends JPanel {
     // Tracks the current segment tree to be rendered
     private SegmentTree segTree;
 
-    // Stores the rendering of the given segment tree
-    private static String[] treeRender = new String[MAX_TREE_NODES];
+    // Stores the rendering of the given segment tree, sized for the tree's current height
+    private String[] treeRender = new String[0];
+
+    // Background colors used to highlight the path and the nodes used for computation
+    private static final String HTML_PATH_COLOR = "#6f8fff";
+    private static final String HTML_COMPUTATION_COLOR = "#ff6f6f";
 
     // GUI variables
     private JScrollPane scrollPane;
@@ -57,10 +61,16 @@ public class TreeRenderer extends JPanel {
     /*
      * Renders a tree starting from the leaves and stores it; Following this, a BFS is run to combine the renders
      * MODIFIES: this
-     * EFFECTS: treeRender stores the tree render for the subtree starting at the given node
+     * EFFECTS: treeRender stores the tree render for the subtree starting at the given node, covering every
+     *          leaf slot of the tree so a grown tree is rendered at its new height;
+     *          nodes are colored from the tree's trace, which is cleared once it has been rendered
      */
     public JPanel render() {
-        renderTree(0, MAX_LEAVES - 1, TREE_ROOT_IND);
+        int capacity = segTree.getCapacity();
+        if (treeRender.length != 2 * capacity) {
+            treeRender = new String[2 * capacity];
+        }
+        renderTree(0, capacity - 1, TREE_ROOT_IND);
 
         JPanel boxPanel = new JPanel();
         boxPanel.setLayout(new BoxLayout(boxPanel, BoxLayout.Y_AXIS));
@@ -72,6 +82,11 @@ public class TreeRenderer extends JPanel {
         } else {
             segTreeRenderLbl.setText("<html><pre>" + this.combineNodeRenders() + "</pre></html>");
         }
+
+        TreeTrace trace = segTree.getTrace();
+        if (trace != null) {
+            trace.clear();
+        }
         return boxPanel;
     }
 
@@ -83,7 +98,7 @@ public class TreeRenderer extends JPanel {
         StringBuilder renderedString = new StringBuilder();
 
         Queue<RenderTreeNode> queue = new LinkedList<>();
-        queue.add(new RenderTreeNode(1, 0, MAX_LEAVES - 1));
+        queue.add(new RenderTreeNode(1, 0, segTree.getCapacity() - 1));
 
         // Run BFS to combine the renders
         while (!queue.isEmpty()) {
@@ -113,8 +128,8 @@ public class TreeRenderer extends JPanel {
 
     /*
      * Renders a subtree for the given tree node
-     * REQUIRES: Valid range (l r) between 0 and MAX_LEAVES-1;
-     *           Valid treeInd between 0 and MAX_TREE_NODES-1
+     * REQUIRES: Valid range (l r) between 0 and segTree.getCapacity()-1;
+     *           Valid treeInd between 1 and 2 * segTree.getCapacity() - 1
      * MODIFIES: this
      * EFFECTS: Runs a post-order DFS to render the Subtrees and then renders the currentNode;
      *          updates treeRender to store the render for the current node;
@@ -137,7 +152,7 @@ public class TreeRenderer extends JPanel {
 
     /*
      * Renders a single node
-     * REQUIRES: Valid treeInd between 0 and MAX_TREE_NODES-1
+     * REQUIRES: Valid treeInd between 1 and 2 * segTree.getCapacity() - 1
      *           curHeight should be 0 or positive
      * MODIFIES: this
      * EFFECTS: Renders the current node with padding based on the given height;
@@ -148,13 +163,10 @@ public class TreeRenderer extends JPanel {
 
         // Handle leaves without adding any padding
         if (curHeight == 0) {
-            TreeNode curSegTreeNode = segTree.getTreeNodeByInd(treeInd);
-            treeRender[treeInd] = getFormattedNodeVal(curSegTreeNode) + pad(NODE_LEN, ' ');
+            treeRender[treeInd] = getFormattedNodeVal(treeInd) + pad(NODE_LEN, ' ');
             return;
         }
 
-        TreeNode curSegTreeNode = segTree.getTreeNodeByInd(treeInd);
-
         // Get number of nodes / 2 for the previous height, for padding
         int cntPrevNodes = (1 << (curHeight - 1)) >> 1;
         int paddingLen = cntPrevNodes * NODE_LEN
@@ -162,7 +174,7 @@ public class TreeRenderer extends JPanel {
                 + NODE_LEN / 2;
 
         curNode.append(pad(paddingLen, ' ') + '/' + pad(paddingLen, '-'));
-        curNode.append(getFormattedNodeVal(curSegTreeNode));
+        curNode.append(getFormattedNodeVal(treeInd));
         curNode.append(pad(paddingLen, '-') + '\\' + pad(paddingLen, ' '));
         curNode.append(pad(NODE_LEN, ' '));
 
@@ -188,17 +200,26 @@ public class TreeRenderer extends JPanel {
      * Centers a node value in the Node render
      * EFFECTS: Places a node value in the center, in a string with a maximum length of NODE_LEN
      *          with whitespaces for padding;
+     *          Highlighted nodes in the tree's trace get a background color
      */
-    private String getFormattedNodeVal(TreeNode segTreeNode) {
-        String strNodeVal = Integer.toString(segTreeNode.getVal());
+    private String getFormattedNodeVal(int treeInd) {
+        String strNodeVal = Integer.toString(segTree.getTreeNodeByInd(treeInd).getVal());
         int valLen = strNodeVal.length();
 
         int remPadding = NODE_LEN - valLen;
         int leftPadding = remPadding / 2;
         int rightPadding = remPadding - leftPadding;
 
-        return pad(leftPadding, ' ')
-                + strNodeVal + pad(rightPadding, ' ');
+        String formattedVal = pad(leftPadding, ' ') + strNodeVal + pad(rightPadding, ' ');
+
+        TreeTrace trace = segTree.getTrace();
+        int highlight = (trace == null) ? TreeTrace.NO_HIGHLIGHT : trace.getHighlight(treeInd);
+        if (highlight == TreeTrace.COMPUTE_HIGHLIGHT) {
+            return "<span style=\"background-color:" + HTML_COMPUTATION_COLOR + "\">" + formattedVal + "</span>";
+        } else if (highlight == TreeTrace.PATH_HIGHLIGHT) {
+            return "<span style=\"background-color:" + HTML_PATH_COLOR + "\">" + formattedVal + "</span>";
+        }
+        return formattedVal;
     }
 
 
@@ -0,0 +1,74 @@
+package benchmark;
+
+import model.merge.ModArithmetic;
+
+import java.util.Random;
+
+import static resources.TreeConfig.MOD;
+
+// Microbenchmark comparing the %-based Product merge with the Barrett reduction in ModArithmetic
+// Run with: java -cp <classpath> benchmark.ModArithmeticBenchmark [iterations]
+public class ModArithmeticBenchmark {
+    private static final int VALUES = 1 << 16;
+    private static final int ROUNDS = 7;
+
+    private static int runtimeModulus = MOD; // Not a compile time constant, like a modulus read from a snapshot
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 50_000_000;
+        int[] values = new int[VALUES];
+        Random random = new Random(1);
+        for (int i = 0; i < VALUES; i++) {
+            values[i] = random.nextInt(MOD);
+        }
+        ModArithmetic arithmetic = new ModArithmetic(runtimeModulus);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            int constant = productConstantMod(values, iterations);
+            long constantNs = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int runtime = productRuntimeMod(values, iterations, runtimeModulus);
+            long runtimeNs = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int barrett = productBarrett(values, iterations, arithmetic);
+            long barrettNs = System.nanoTime() - start;
+
+            if (constant != runtime || runtime != barrett) {
+                throw new IllegalStateException("Results differ: " + constant + " " + runtime + " " + barrett);
+            }
+            System.out.printf("round %d: %% constant MOD %.2f ns/op, %% runtime modulus %.2f ns/op, "
+                    + "Barrett %.2f ns/op%n", round, (double) constantNs / iterations,
+                    (double) runtimeNs / iterations, (double) barrettNs / iterations);
+        }
+    }
+
+    // EFFECTS: Folds the values with the %-based merge against the compile time constant MOD
+    private static int productConstantMod(int[] values, int iterations) {
+        int acc = 1;
+        for (int i = 0; i < iterations; i++) {
+            acc = (int) ((1L * acc * values[i & (VALUES - 1)]) % MOD);
+        }
+        return acc;
+    }
+
+    // EFFECTS: Folds the values with the %-based merge against a modulus only known at runtime
+    private static int productRuntimeMod(int[] values, int iterations, int modulus) {
+        int acc = 1;
+        for (int i = 0; i < iterations; i++) {
+            acc = (int) ((1L * acc * values[i & (VALUES - 1)]) % modulus);
+        }
+        return acc;
+    }
+
+    // EFFECTS: Folds the values with Barrett reduction
+    private static int productBarrett(int[] values, int iterations, ModArithmetic arithmetic) {
+        int acc = 1;
+        for (int i = 0; i < iterations; i++) {
+            acc = arithmetic.multiply(acc, values[i & (VALUES - 1)]);
+        }
+        return acc;
+    }
+}
@@ -0,0 +1,87 @@
+package benchmark;
+
+import model.SegmentTree;
+import model.merge.SumMerge;
+import persistence.TreeJournal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static resources.TreeConfig.MOD;
+
+// Benchmark of TreeJournal group commit: raw journal appends, and SegmentTree updates with and without a journal
+// Run with: java -cp <classpath> benchmark.TreeJournalBenchmark [commitIntervalMillis...]
+public class TreeJournalBenchmark {
+    private static final int LEAVES = 1 << 20;
+    private static final int OPS = 5_000_000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws IOException {
+        long[] intervals = {1, 10, 100};
+        if (args.length > 0) {
+            intervals = new long[args.length];
+            for (int i = 0; i < args.length; i++) {
+                intervals[i] = Long.parseLong(args[i]);
+            }
+        }
+        Path dir = Files.createTempDirectory("tree-journal-benchmark");
+        String journalFile = dir.resolve("segTree.journal").toString();
+
+        Random random = new Random(LEAVES);
+        int[] values = new int[LEAVES];
+        for (int i = 0; i < LEAVES; i++) {
+            values[i] = random.nextInt(MOD);
+        }
+        int[] inds = new int[OPS];
+        int[] vals = new int[OPS];
+        for (int i = 0; i < OPS; i++) {
+            inds[i] = random.nextInt(LEAVES);
+            vals[i] = random.nextInt(MOD);
+        }
+
+        for (long interval : intervals) {
+            for (int round = 0; round < ROUNDS; round++) {
+                SegmentTree segTree = new SegmentTree(values, new SumMerge());
+                try (TreeJournal journal = new TreeJournal(journalFile, interval)) {
+                    journal.attach(segTree);
+                    segTree.setListener(null);
+                    long start = System.nanoTime();
+                    for (int i = 0; i < OPS; i++) {
+                        journal.leafUpdated(inds[i], vals[i]);
+                    }
+                    journal.commit();
+                    long appendNs = System.nanoTime() - start;
+
+                    segTree.setListener(journal);
+                    long journaledNs = timeUpdates(segTree, inds, vals);
+                    journal.commit();
+                    segTree.setListener(null);
+                    long plainNs = timeUpdates(segTree, inds, vals);
+
+                    System.out.printf("interval=%dms round %d: journal %.2f M records/s, journaled updates %.2f M/s,"
+                            + " plain updates %.2f M/s%n", interval, round, perSecond(appendNs),
+                            perSecond(journaledNs), perSecond(plainNs));
+                }
+            }
+        }
+        Files.deleteIfExists(Path.of(journalFile));
+        Files.deleteIfExists(dir);
+    }
+
+    // EFFECTS: Applies every update to the tree and returns the time taken in ns
+    private static long timeUpdates(SegmentTree segTree, int[] inds, int[] vals) {
+        long start = System.nanoTime();
+        for (int i = 0; i < OPS; i++) {
+            segTree.updateVal(inds[i], vals[i]);
+        }
+        long ns = System.nanoTime() - start;
+        return ns;
+    }
+
+    // EFFECTS: Returns OPS operations in the given time as millions per second
+    private static double perSecond(long ns) {
+        return OPS * 1e3 / ns;
+    }
+}
@@ -0,0 +1,72 @@
+package benchmark;
+
+import model.RangeQueryEngine;
+import model.RangeQueryEngines;
+import model.RangeQueryEngines.EngineType;
+import model.merge.MergeFunction;
+import model.merge.MinMerge;
+import model.merge.SumMerge;
+
+import java.util.Random;
+
+import static resources.TreeConfig.MOD;
+
+// Benchmark comparing point updates and range queries of SegmentTree and WideSegmentTree on large trees
+// Run with: java -Xmx4g -cp <classpath> benchmark.WideSegmentTreeBenchmark [leafCount...]
+public class WideSegmentTreeBenchmark {
+    private static final int OPS = 2_000_000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        int[] sizes = {1_000_000, 10_000_000, 100_000_000};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        for (int n : sizes) {
+            for (MergeFunction fn : new MergeFunction[]{new SumMerge(), new MinMerge()}) {
+                run(n, fn);
+            }
+        }
+    }
+
+    // EFFECTS: Prints the ns/op of updates and queries of both engines over n random leaves
+    private static void run(int n, MergeFunction fn) {
+        Random random = new Random(n);
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = random.nextInt(MOD);
+        }
+        int[] inds = new int[OPS];
+        int[] ls = new int[OPS];
+        int[] rs = new int[OPS];
+        for (int i = 0; i < OPS; i++) {
+            inds[i] = random.nextInt(n);
+            ls[i] = random.nextInt(n);
+            rs[i] = ls[i] + random.nextInt(n - ls[i]);
+        }
+
+        for (EngineType type : new EngineType[]{EngineType.SEGMENT_TREE, EngineType.WIDE_SEGMENT_TREE}) {
+            RangeQueryEngine engine = RangeQueryEngines.build(values, fn, type);
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < OPS; i++) {
+                    engine.updateVal(inds[i], ls[i]);
+                }
+                long updateNs = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                int acc = 0;
+                for (int i = 0; i < OPS; i++) {
+                    acc ^= engine.rangeSumProduct(ls[i], rs[i]);
+                }
+                long queryNs = System.nanoTime() - start;
+
+                System.out.printf("n=%d %s %s round %d: update %.1f ns/op, query %.1f ns/op (%d)%n", n,
+                        fn.getName(), type, round, (double) updateNs / OPS, (double) queryNs / OPS, acc);
+            }
+        }
+    }
+}
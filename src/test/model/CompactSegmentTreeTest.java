@@ -0,0 +1,87 @@
+package model;
+
+import model.merge.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static resources.TreeConfig.MOD;
+
+// Unit tests for the CompactSegmentTree class
+public class CompactSegmentTreeTest {
+
+    @Test
+    void testSingleLeaf() {
+        CompactSegmentTree st = new CompactSegmentTree(new int[]{7}, new ProductMerge());
+        assertEquals(st.rangeSumProduct(0, 0), 7);
+        st.updateVal(0, 3);
+        assertEquals(st.rangeSumProduct(0, 0), 3);
+        assertEquals(st.getLeafVal(0), 3);
+    }
+
+    @Test
+    void testMatchesSegmentTree() {
+        Random random = new Random(20);
+        MergeFunction[] fns = {new SumMerge(), new ProductMerge(), new MinMerge(), new GcdMerge()};
+        for (MergeFunction fn : fns) {
+            for (int n : new int[]{2, 3, 5, 6, 7, 13, 100}) {
+                int[] values = new int[n];
+                for (int i = 0; i < n; i++) {
+                    values[i] = random.nextInt(MOD);
+                }
+                CompactSegmentTree compact = new CompactSegmentTree(values, fn);
+                SegmentTree st = new SegmentTree(values, fn);
+                assertEquals(compact.getLeafCount(), n);
+
+                for (int step = 0; step < 100; step++) {
+                    int ind = random.nextInt(n);
+                    int val = random.nextInt(MOD);
+                    compact.updateVal(ind, val);
+                    st.updateVal(ind, val);
+                }
+                for (int l = 0; l < n; l++) {
+                    for (int r = l; r < n; r++) {
+                        assertEquals(compact.rangeSumProduct(l, r), st.rangeSumProduct(l, r));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testMixedSignsMatchSegmentTree() {
+        Random random = new Random(200);
+        for (MergeFunction fn : new MergeFunction[]{new SumMerge(), new ProductMerge()}) {
+            for (int n : new int[]{1, 3, 1000}) {
+                int[] values = new int[n];
+                for (int i = 0; i < n; i++) {
+                    values[i] = random.nextInt();
+                }
+                CompactSegmentTree compact = new CompactSegmentTree(values, fn);
+                SegmentTree st = new SegmentTree(values, fn);
+
+                for (int step = 0; step < 10000; step++) {
+                    if (step % 10 == 0) {
+                        int ind = random.nextInt(n);
+                        int val = random.nextInt();
+                        compact.updateVal(ind, val);
+                        st.updateVal(ind, val);
+                    }
+                    int l = random.nextInt(n);
+                    int r = l + random.nextInt(n - l);
+                    assertEquals(compact.rangeSumProduct(l, r), st.rangeSumProduct(l, r));
+                }
+            }
+        }
+        CompactSegmentTree single = new CompactSegmentTree(new int[]{-5}, new SumMerge());
+        assertEquals(single.rangeSumProduct(0, 0), MOD - 5);
+        assertEquals(single.getLeafVal(0), -5);
+    }
+
+    @Test
+    void testEngineSelection() {
+        assertTrue(RangeQueryEngines.build(new int[]{1, 2, 3}, new MaxMerge(),
+                RangeQueryEngines.EngineType.COMPACT_SEGMENT_TREE) instanceof CompactSegmentTree);
+    }
+}
@@ -0,0 +1,192 @@
+package model;
+
+import model.merge.MaxMerge;
+import model.merge.SumMerge;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Unit tests for the ConcurrentSegmentTree class
+public class ConcurrentSegmentTreeTest {
+
+    @Test
+    void testSingleThreaded() {
+        ConcurrentSegmentTree st = new ConcurrentSegmentTree(new int[]{4, 9, 2, 7, 1}, new MaxMerge());
+        assertEquals(st.rangeSumProduct(0, 4), 9);
+        assertEquals(st.rangeSumProduct(2, 4), 7);
+
+        st.updateVal(4, 12);
+        assertEquals(st.rangeSumProduct(3, 4), 12);
+        assertEquals(st.getLeafVal(4), 12);
+        assertEquals(st.getLeafCount(), 5);
+        assertEquals(st.getMergeFn().getName(), "Max");
+    }
+
+    @Test
+    void testConcurrentWritersAndReaders() throws InterruptedException {
+        int writers = 4;
+        int leavesPerWriter = 64;
+        int rounds = 200;
+        int n = writers * leavesPerWriter;
+        ConcurrentSegmentTree st = new ConcurrentSegmentTree(new int[n], new SumMerge());
+
+        AtomicBoolean failed = new AtomicBoolean(false);
+        AtomicBoolean done = new AtomicBoolean(false);
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int first = w * leavesPerWriter;
+            threads.add(new Thread(() -> {
+                for (int round = 1; round <= rounds; round++) {
+                    for (int i = first; i < first + leavesPerWriter; i++) {
+                        st.updateVal(i, round);
+                    }
+                }
+            }));
+        }
+        for (int reader = 0; reader < 2; reader++) {
+            threads.add(new Thread(() -> {
+                int last = 0;
+                while (!done.get()) {
+                    int total = st.rangeSumProduct(0, n - 1);
+                    if (total < last || total > n * rounds) {
+                        failed.set(true);
+                    }
+                    last = total;
+                }
+            }));
+        }
+
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (int w = 0; w < writers; w++) {
+            threads.get(w).join();
+        }
+        done.set(true);
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        assertFalse(failed.get());
+        assertEquals(st.rangeSumProduct(0, n - 1), n * rounds);
+        assertEquals(st.rangeSumProduct(10, 19), 10 * rounds);
+    }
+
+    @Test
+    void testConcurrentMaxWithValuesGoingBack() throws InterruptedException {
+        int writers = 4;
+        int leavesPerWriter = 8;
+        int rounds = 2000;
+        int n = writers * leavesPerWriter;
+        ConcurrentSegmentTree st = new ConcurrentSegmentTree(new int[n], new MaxMerge());
+
+        // Every leaf keeps going up and back down, so parents keep returning to values they held before
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int first = w * leavesPerWriter;
+            threads.add(new Thread(() -> {
+                for (int round = 1; round <= rounds; round++) {
+                    for (int i = first; i < first + leavesPerWriter; i++) {
+                        st.updateVal(i, (round % 2 == 0) ? 1 : 100 + i);
+                    }
+                }
+            }));
+        }
+        AtomicBoolean failed = new AtomicBoolean(false);
+        AtomicBoolean done = new AtomicBoolean(false);
+        threads.add(new Thread(() -> {
+            while (!done.get()) {
+                int max = st.rangeSumProduct(0, n - 1);
+                if (max != 0 && max != 1 && (max < 100 || max >= 100 + n)) {
+                    failed.set(true);
+                }
+            }
+        }));
+
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (int w = 0; w < writers; w++) {
+            threads.get(w).join();
+        }
+        done.set(true);
+        threads.get(writers).join();
+
+        assertFalse(failed.get());
+        for (int l = 0; l < n; l++) {
+            for (int r = l; r < n; r++) {
+                assertEquals(st.rangeSumProduct(l, r), 1);
+            }
+        }
+        st.updateVal(n - 1, 7);
+        assertEquals(st.rangeSumProduct(0, n - 1), 7);
+    }
+
+    @Test
+    void testReadersProgressUnderSustainedWrites() throws InterruptedException {
+        int writers = 4;
+        int blockSize = 16;
+        int offset = 3; // Blocks do not line up with subtrees, so every block has several canonical nodes
+        int n = offset + writers * blockSize;
+        int queries = 20000;
+        ConcurrentSegmentTree st = new ConcurrentSegmentTree(new int[n], new SumMerge());
+
+        // Each writer sets the first leaf of its block to round and then the last one to -round, so the sum of a
+        // block is always 0 or 1 and a query that mixed old and new nodes would see -1
+        AtomicBoolean done = new AtomicBoolean(false);
+        List<Thread> writerThreads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int first = offset + w * blockSize;
+            writerThreads.add(new Thread(() -> {
+                for (int round = 1; !done.get(); round++) {
+                    st.updateVal(first, round);
+                    st.updateVal(first + blockSize - 1, -round);
+                }
+            }));
+        }
+        AtomicBoolean failed = new AtomicBoolean(false);
+        AtomicInteger completed = new AtomicInteger();
+        List<Thread> readerThreads = new ArrayList<>();
+        for (int reader = 0; reader < 2; reader++) {
+            Random random = new Random(reader);
+            readerThreads.add(new Thread(() -> {
+                for (int q = 0; q < queries; q++) {
+                    int a = random.nextInt(writers);
+                    int b = a + random.nextInt(writers - a);
+                    int sum = st.rangeSumProduct(offset + a * blockSize, offset + (b + 1) * blockSize - 1);
+                    if (sum < 0 || sum > b - a + 1) {
+                        failed.set(true);
+                    }
+                    completed.incrementAndGet();
+                }
+            }));
+        }
+
+        for (Thread t : writerThreads) {
+            t.start();
+        }
+        for (Thread t : readerThreads) {
+            t.start();
+        }
+        for (Thread t : readerThreads) {
+            t.join(30000);
+        }
+        int readerQueries = completed.get();
+        done.set(true);
+        for (Thread t : writerThreads) {
+            t.join();
+        }
+        for (Thread t : readerThreads) {
+            t.join();
+        }
+
+        assertEquals(readerQueries, 2 * queries);
+        assertFalse(failed.get());
+    }
+}
@@ -0,0 +1,80 @@
+package model;
+
+import model.merge.MaxMerge;
+import model.merge.ProductMerge;
+import model.merge.SumMerge;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Unit tests for the DynamicSegmentTree class
+public class DynamicSegmentTreeTest {
+
+    @Test
+    void testSparseKeys() {
+        DynamicSegmentTree st = new DynamicSegmentTree(new SumMerge());
+        assertEquals(st.rangeSumProduct(0, DynamicSegmentTree.MAX_KEY), 0);
+
+        st.updateVal(5, 10);
+        st.updateVal(1_700_000_000_000L, 20);
+        st.updateVal(DynamicSegmentTree.MAX_KEY, 30);
+
+        assertEquals(st.rangeSumProduct(0, DynamicSegmentTree.MAX_KEY), 60);
+        assertEquals(st.rangeSumProduct(6, DynamicSegmentTree.MAX_KEY - 1), 20);
+        assertEquals(st.rangeSumProduct(0, 5), 10);
+        assertEquals(st.getVal(1_700_000_000_000L), 20);
+        assertEquals(st.getVal(1_700_000_000_001L), 0);
+        assertTrue(st.getNodeCount() <= 3 * 64);
+    }
+
+    @Test
+    void testReleasedNodesAreReused() {
+        DynamicSegmentTree st = new DynamicSegmentTree(new SumMerge());
+        st.updateVal(42, 7);
+        int pathNodes = st.getNodeCount();
+        assertEquals(pathNodes, 64);
+
+        st.updateVal(42, 0);
+        assertEquals(st.getNodeCount(), 0);
+        assertEquals(st.rangeSumProduct(0, DynamicSegmentTree.MAX_KEY), 0);
+
+        for (int i = 0; i < 1000; i++) {
+            st.updateVal(i * 7919L, 1);
+            st.updateVal(i * 7919L, 0);
+        }
+        assertEquals(st.getNodeCount(), 0);
+    }
+
+    @Test
+    void testMatchesNaive() {
+        Random random = new Random(15);
+        DynamicSegmentTree st = new DynamicSegmentTree(new MaxMerge());
+        TreeMap<Long, Integer> naive = new TreeMap<>();
+        for (int step = 0; step < 2000; step++) {
+            long key = random.nextInt(1000) * 1_000_003L;
+            int val = random.nextInt(10) == 0 ? Integer.MIN_VALUE : random.nextInt();
+            st.updateVal(key, val);
+            naive.put(key, val);
+
+            long l = random.nextInt(1000) * 1_000_003L;
+            long r = l + random.nextInt(500_000_000);
+            int expected = Integer.MIN_VALUE;
+            for (int v : naive.subMap(l, true, r, true).values()) {
+                expected = Math.max(expected, v);
+            }
+            assertEquals(st.rangeSumProduct(l, r), expected);
+        }
+    }
+
+    @Test
+    void testProductIdentity() {
+        DynamicSegmentTree st = new DynamicSegmentTree(new ProductMerge());
+        st.updateVal(3, 4);
+        st.updateVal(1L << 40, 5);
+        assertEquals(st.rangeSumProduct(0, 1L << 41), 20);
+        assertEquals(st.rangeSumProduct(4, (1L << 40) - 1), 1);
+    }
+}
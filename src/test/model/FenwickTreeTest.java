@@ -0,0 +1,149 @@
+package model;
+
+import model.merge.MinMerge;
+import model.merge.ProductMerge;
+import model.merge.SumMerge;
+import model.merge.XorMerge;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static resources.TreeConfig.MOD;
+
+// Unit tests for the FenwickTree class and the RangeQueryEngines factory
+public class FenwickTreeTest {
+
+    @Test
+    void testSum() {
+        FenwickTree ft = new FenwickTree(new int[]{1, 2, 3, 4, 5}, new SumMerge());
+        assertEquals(ft.getLeafCount(), 5);
+        assertEquals(ft.rangeSumProduct(0, 4), 15);
+        assertEquals(ft.rangeSumProduct(1, 3), 9);
+        assertEquals(ft.rangeSumProduct(4, 4), 5);
+
+        ft.updateVal(2, 10);
+        assertEquals(ft.rangeSumProduct(0, 4), 22);
+        assertEquals(ft.rangeSumProduct(2, 2), 10);
+
+        ft.updateVal(0, MOD - 1);
+        assertEquals(ft.rangeSumProduct(0, 1), 1);
+        assertEquals(ft.rangeSumProduct(0, 0), MOD - 1);
+    }
+
+    @Test
+    void testMatchesSegmentTree() {
+        Random random = new Random(13);
+        for (RangeQueryEngineFactory factory : new RangeQueryEngineFactory[]{
+                values -> new FenwickTree(values, new SumMerge()),
+                values -> new FenwickTree(values, new XorMerge())}) {
+            int[] values = new int[37];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = random.nextInt(MOD);
+            }
+            RangeQueryEngine ft = factory.build(values);
+            SegmentTree st = new SegmentTree(values, ft.getMergeFn());
+
+            for (int step = 0; step < 500; step++) {
+                int ind = random.nextInt(values.length);
+                int val = random.nextInt(MOD);
+                ft.updateVal(ind, val);
+                st.updateVal(ind, val);
+
+                int l = random.nextInt(values.length);
+                int r = l + random.nextInt(values.length - l);
+                assertEquals(ft.rangeSumProduct(l, r), st.rangeSumProduct(l, r));
+            }
+        }
+    }
+
+    @Test
+    void testNegativeValuesMatchSegmentTree() {
+        int[] values = {-500, 27, -3, 0, -1, 8};
+        RangeQueryEngine auto = RangeQueryEngines.build(values, new SumMerge());
+        SegmentTree st = new SegmentTree(values, new SumMerge());
+        assertEquals(auto.rangeSumProduct(0, 1), MOD - 473);
+
+        Random random = new Random(17);
+        for (int step = 0; step < 500; step++) {
+            int ind = random.nextInt(values.length);
+            int val = random.nextInt(2001) - 1000;
+            auto.updateVal(ind, val);
+            st.updateVal(ind, val);
+
+            int l = random.nextInt(values.length);
+            int r = l + random.nextInt(values.length - l);
+            assertEquals(auto.rangeSumProduct(l, r), st.rangeSumProduct(l, r));
+        }
+
+        auto.updateVal(0, -(MOD - 1));
+        st.updateVal(0, -(MOD - 1));
+        for (int i = 1; i < values.length; i++) {
+            auto.updateVal(i, -2);
+            st.updateVal(i, -2);
+        }
+        assertEquals(auto.rangeSumProduct(0, 5), MOD - 9);
+        assertEquals(auto.rangeSumProduct(0, 5), st.rangeSumProduct(0, 5));
+    }
+
+    @Test
+    void testAutoEngineMatchesSegmentTreeOnMixedSigns() {
+        int[] values = {600000000, 600000000, -700000000};
+        RangeQueryEngine auto = RangeQueryEngines.build(values, new SumMerge());
+        SegmentTree st = new SegmentTree(values, new SumMerge());
+        assertEquals(st.rangeSumProduct(0, 2), 500000000);
+        assertEquals(auto.rangeSumProduct(0, 2), 500000000);
+        assertEquals(auto.rangeSumProduct(2, 2), MOD - 700000000);
+        assertEquals(st.rangeSumProduct(2, 2), MOD - 700000000);
+
+        Random random = new Random(19);
+        values = new int[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt();
+        }
+        auto = RangeQueryEngines.build(values, new SumMerge());
+        st = new SegmentTree(values, new SumMerge());
+        for (int step = 0; step < 10000; step++) {
+            if (step % 10 == 0) {
+                int ind = random.nextInt(values.length);
+                int val = random.nextInt();
+                auto.updateVal(ind, val);
+                st.updateVal(ind, val);
+            }
+            int l = random.nextInt(values.length);
+            int r = l + random.nextInt(values.length - l);
+            int expected = st.rangeSumProduct(l, r);
+            assertTrue(expected >= 0 && expected < MOD);
+            assertEquals(auto.rangeSumProduct(l, r), expected);
+        }
+    }
+
+    @Test
+    void testRejectsNonInvertibleMerge() {
+        try {
+            new FenwickTree(new int[]{1, 2}, new ProductMerge());
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // pass
+        }
+    }
+
+    @Test
+    void testFactorySelection() {
+        int[] values = {4, 1, 3};
+        assertTrue(RangeQueryEngines.build(values, new SumMerge()) instanceof FenwickTree);
+        assertTrue(RangeQueryEngines.build(values, new XorMerge()) instanceof FenwickTree);
+        assertTrue(RangeQueryEngines.build(values, new ProductMerge()) instanceof SegmentTree);
+
+        RangeQueryEngine min = RangeQueryEngines.build(values, new MinMerge());
+        assertTrue(min instanceof SegmentTree);
+        assertEquals(min.rangeSumProduct(0, 2), 1);
+        min.updateVal(1, 7);
+        assertEquals(min.rangeSumProduct(0, 2), 3);
+    }
+
+    // Represents a way of building an engine from leaf values
+    private interface RangeQueryEngineFactory {
+        RangeQueryEngine build(int[] values);
+    }
+}
@@ -0,0 +1,148 @@
+package model;
+
+import model.merge.MaxMerge;
+import model.merge.ModArithmetic;
+import model.merge.ProductMerge;
+import model.merge.SumMerge;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Unit tests for the MappedSegmentTree class
+public class MappedSegmentTreeTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void testUpdateAndQuery() throws IOException {
+        try (MappedSegmentTree st = new MappedSegmentTree(dir.resolve("sum.seg"), new int[]{1, 2, 3, 4, 5},
+                new SumMerge())) {
+            assertEquals(st.getLeafCount(), 5);
+            assertEquals(st.rangeSumProduct(0, 4), 15);
+            assertEquals(st.rangeSumProduct(1, 3), 9);
+
+            st.updateVal(2, 10);
+            assertEquals(st.getLeaf(2), 10);
+            assertEquals(st.rangeSumProduct(0, 4), 22);
+            assertEquals(st.rangeSumProduct(2, 2), 10);
+        }
+    }
+
+    @Test
+    void testReopenWithoutRebuild() throws IOException {
+        Path file = dir.resolve("product.seg");
+        try (MappedSegmentTree st = new MappedSegmentTree(file, new int[]{2, 3, 4}, new ProductMerge())) {
+            st.updateVal(0, 5);
+            st.force();
+        }
+
+        try (MappedSegmentTree st = new MappedSegmentTree(file)) {
+            assertEquals(st.getLeafCount(), 3);
+            assertEquals(st.getMergeFn().getName(), ProductMerge.NAME);
+            assertEquals(st.rangeSumProduct(0, 2), 60);
+            st.updateVal(2, 1);
+        }
+
+        try (MappedSegmentTree st = new MappedSegmentTree(file)) {
+            assertEquals(st.rangeSumProduct(0, 2), 15);
+        }
+    }
+
+    @Test
+    void testReopenKeepsModulus() throws IOException {
+        Path file = dir.resolve("mod.seg");
+        new MappedSegmentTree(file, new int[]{5, 6}, new SumMerge(new ModArithmetic(7))).close();
+
+        try (MappedSegmentTree st = new MappedSegmentTree(file)) {
+            assertEquals(st.getMergeFn().getModulus(), 7);
+            assertEquals(st.rangeSumProduct(0, 1), 4);
+        }
+    }
+
+    @Test
+    void testIdentityLeaves() throws IOException {
+        try (MappedSegmentTree st = new MappedSegmentTree(dir.resolve("max.seg"), 1000L, new MaxMerge())) {
+            assertEquals(st.rangeSumProduct(0, 999), Integer.MIN_VALUE);
+            st.updateVal(700, 3);
+            st.updateVal(10, -4);
+            assertEquals(st.rangeSumProduct(0, 999), 3);
+            assertEquals(st.rangeSumProduct(0, 699), -4);
+        }
+        try (MappedSegmentTree st = new MappedSegmentTree(dir.resolve("sum.seg"), 1L, new SumMerge())) {
+            st.updateVal(0, 8);
+            assertEquals(st.rangeSumProduct(0, 0), 8);
+        }
+    }
+
+    @Test
+    void testRejectsOtherFiles() throws IOException {
+        Path file = dir.resolve("other.seg");
+        Files.write(file, new byte[]{1, 2, 3});
+        try {
+            new MappedSegmentTree(file);
+            fail("IOException expected");
+        } catch (IOException e) {
+            // pass
+        }
+    }
+
+    @Test
+    void testRejectsPartlyBuiltFiles() throws IOException {
+        Path file = dir.resolve("segTree.seg");
+        new MappedSegmentTree(file, new int[]{1, 2, 3, 4, 5}, new SumMerge()).close();
+        byte[] valid = Files.readAllBytes(file);
+
+        // A crash before the header is written leaves it zeroed; a crash while sizing the file leaves it short
+        byte[] noHeader = valid.clone();
+        Arrays.fill(noHeader, 0, MappedSegmentTree.HEADER_BYTES, (byte) 0);
+        byte[][] partlyBuilt = {noHeader, Arrays.copyOf(valid, valid.length - Integer.BYTES),
+                Arrays.copyOf(valid, MappedSegmentTree.HEADER_BYTES)};
+        for (byte[] bytes : partlyBuilt) {
+            Files.write(file, bytes);
+            try {
+                new MappedSegmentTree(file).close();
+                fail("IOException expected");
+            } catch (IOException e) {
+                // pass
+            }
+        }
+
+        new MappedSegmentTree(file, new int[]{1, 2, 3, 4, 5}, new SumMerge()).close();
+        try (MappedSegmentTree st = new MappedSegmentTree(file)) {
+            assertEquals(st.rangeSumProduct(0, 4), 15);
+        }
+    }
+
+    @Test
+    void testRejectsCorruptHeaders() throws IOException {
+        Path file = dir.resolve("segTree.seg");
+        new MappedSegmentTree(file, new int[]{1, 2, 3}, new SumMerge()).close();
+        byte[] valid = Files.readAllBytes(file);
+
+        // Offsets of the leaf count, capacity and name length fields in the header
+        int[][] corruptions = {{8, 0}, {8, -5}, {16, 2}, {16, 8}, {28, -1}, {28, 33}, {28, 1 << 20}};
+        for (int[] corruption : corruptions) {
+            ByteBuffer corrupt = ByteBuffer.wrap(valid.clone()).order(ByteOrder.LITTLE_ENDIAN);
+            if (corruption[0] == 28) {
+                corrupt.putInt(corruption[0], corruption[1]);
+            } else {
+                corrupt.putLong(corruption[0], corruption[1]);
+            }
+            Files.write(file, corrupt.array());
+            try {
+                new MappedSegmentTree(file).close();
+                fail("IOException expected");
+            } catch (IOException e) {
+                // pass
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package model;
+
+import model.merge.ProductMerge;
+import model.merge.SumMerge;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Unit tests for the PersistentSegmentTree class
+public class PersistentSegmentTreeTest {
+    private PersistentSegmentTree segTree;
+
+    @BeforeEach
+    void runBefore() {
+        segTree = new PersistentSegmentTree(new int[]{1, 2, 3, 4, 5}, new SumMerge());
+    }
+
+    @Test
+    void testVersionsAreIndependent() {
+        int v1 = segTree.updateVal(0, 10);
+        int v2 = segTree.updateVal(4, 50);
+        int branch = segTree.updateVal(0, 2, 30);
+
+        assertEquals(v1, 1);
+        assertEquals(v2, 2);
+        assertEquals(branch, 3);
+        assertEquals(segTree.getLatestVersion(), 3);
+
+        assertEquals(segTree.rangeSumProduct(0, 0, 4), 15);
+        assertEquals(segTree.rangeSumProduct(v1, 0, 4), 24);
+        assertEquals(segTree.rangeSumProduct(v2, 0, 4), 69);
+        assertEquals(segTree.rangeSumProduct(branch, 0, 4), 42);
+        assertEquals(segTree.rangeSumProduct(branch, 3, 4), 9);
+    }
+
+    @Test
+    void testProduct() {
+        PersistentSegmentTree st = new PersistentSegmentTree(new int[]{2, 3, 4}, new ProductMerge());
+        int v1 = st.updateVal(1, 5);
+        assertEquals(st.rangeSumProduct(0, 0, 2), 24);
+        assertEquals(st.rangeSumProduct(v1, 0, 2), 40);
+        assertEquals(st.getMergeFn().getName(), "Product");
+        assertEquals(st.getLeafCount(), 3);
+    }
+
+    @Test
+    void testReleaseVersion() {
+        int v1 = segTree.updateVal(1, 7);
+        segTree.updateVal(v1, 2, 8);
+        segTree.releaseVersion(v1);
+
+        assertFalse(segTree.isAvailable(v1));
+        assertTrue(segTree.isAvailable(0));
+        assertEquals(segTree.rangeSumProduct(2, 0, 4), 1 + 7 + 8 + 4 + 5);
+        try {
+            segTree.rangeSumProduct(v1, 0, 4);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // pass
+        }
+        try {
+            segTree.releaseVersion(segTree.getLatestVersion());
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // pass
+        }
+
+        segTree.releaseVersionsBefore(2);
+        assertFalse(segTree.isAvailable(0));
+        assertTrue(segTree.isAvailable(2));
+    }
+}
@@ -1,12 +1,26 @@
 package model;
 
+import model.merge.GcdMerge;
+import model.merge.MaxMerge;
+import model.merge.MinMerge;
+import model.merge.ModArithmetic;
+import model.merge.ProductMerge;
+import model.merge.SumMerge;
+import model.merge.XorMerge;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import resources.TreeConfig;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static java.lang.Math.min;
+import static org.junit.jupiter.api.Assertions.fail;
 import static resources.TreeConfig.*;
 
 // Unit tests for Segment Tree class
@@ -84,4 +98,591 @@ class SegmentTreeTest {
         assertEquals(segTree.getTreeNodeByInd(TREE_ROOT_IND).getVal(), allSum);
     }
 
+    @Test
+    void testNonPowerOfTwoSize() {
+        SegmentTree st = new SegmentTree(new int[]{3, 1, 4, 1, 5});
+        assertEquals(st.getLeafCount(), 5);
+        assertEquals(st.getCapacity(), 8);
+        assertEquals(st.rangeSumProduct(0, 4), 14);
+        assertEquals(st.rangeSumProduct(1, 3), 6);
+
+        st.flipMergeFn();
+        assertEquals(st.rangeSumProduct(0, 4), 60);
+        assertEquals(st.getTreeNodeByInd(TREE_ROOT_IND).getVal(), 60);
+
+        st.updateVal(4, 2);
+        assertEquals(st.rangeSumProduct(2, 4), 8);
+        assertEquals(st.getLeaf(4).getVal(), 2);
+    }
+
+    @Test
+    void testSingleLeaf() {
+        SegmentTree st = new SegmentTree(new int[]{7});
+        assertEquals(st.getCapacity(), 1);
+        assertEquals(st.rangeSumProduct(0, 0), 7);
+
+        st.updateVal(0, 9);
+        assertEquals(st.getTreeNodeByInd(TREE_ROOT_IND).getVal(), 9);
+    }
+
+    @Test
+    void testIndependentTrees() {
+        SegmentTree other = new SegmentTree(new int[]{10, 20});
+        other.updateVal(0, 5);
+
+        assertEquals(other.rangeSumProduct(0, 1), 25);
+        assertEquals(segTree.rangeSumProduct(0, 15), 16 * 17 / 2);
+        assertEquals(segTree.getTreeNodeByInd(TREE_ROOT_IND).getVal(), 16 * 17 / 2);
+    }
+
+    @Test
+    void testTraceIsOptIn() {
+        segTree.updateVal(0, 5);
+        segTree.rangeSumProduct(0, 3);
+        assertNull(segTree.getTrace());
+
+        TreeTrace trace = new TreeTrace();
+        segTree.setTrace(trace);
+        segTree.updateVal(0, 5);
+        int leafInd = segTree.getCapacity();
+        assertEquals(trace.getHighlight(leafInd), TreeTrace.COMPUTE_HIGHLIGHT);
+        assertEquals(trace.getHighlight(TREE_ROOT_IND), TreeTrace.PATH_HIGHLIGHT);
+
+        trace.clear();
+        segTree.rangeSumProduct(0, 7);
+        assertEquals(trace.getHighlight(2), TreeTrace.COMPUTE_HIGHLIGHT);
+        assertEquals(trace.getHighlight(leafInd), TreeTrace.NO_HIGHLIGHT);
+    }
+
+    @Test
+    void testQueriesDoNotPushPendingTags() {
+        segTree.rangeAssign(0, 15, 2);
+        segTree.rangeAdd(4, 11, 3);
+        int[] before = new int[2 * segTree.getCapacity()];
+        for (int i = TREE_ROOT_IND; i < before.length; i++) {
+            before[i] = segTree.getTreeNodeByInd(i).getVal();
+        }
+
+        assertEquals(segTree.rangeSumProduct(3, 12), 2 * 2 + 8 * 5);
+        assertEquals(segTree.getLeaf(5).getVal(), 5);
+        assertEquals(segTree.rangeSumProduct(new int[]{0}, new int[]{15})[0], 8 * 2 + 8 * 5);
+        for (int i = TREE_ROOT_IND; i < before.length; i++) {
+            assertEquals(before[i], segTree.getTreeNodeByInd(i).getVal());
+        }
+    }
+
+    @Test
+    void testBottomUpMatchesRecursive() {
+        Random random = new Random(210);
+        int[] values = new int[37];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(MOD);
+        }
+        SegmentTree iterative = new SegmentTree(values);
+        SegmentTree recursive = new SegmentTree(values);
+        recursive.setBottomUp(false);
+        assertTrue(iterative.isBottomUp());
+
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 200; i++) {
+                int ind = random.nextInt(values.length);
+                int val = random.nextInt(MOD);
+                iterative.updateVal(ind, val);
+                recursive.updateVal(ind, val);
+
+                int l = random.nextInt(values.length);
+                int r = l + random.nextInt(values.length - l);
+                assertEquals(recursive.rangeSumProduct(l, r), iterative.rangeSumProduct(l, r));
+            }
+            assertEquals(recursive.getTreeNodeByInd(TREE_ROOT_IND).getVal(),
+                    iterative.getTreeNodeByInd(TREE_ROOT_IND).getVal());
+
+            iterative.flipMergeFn();
+            recursive.flipMergeFn();
+        }
+    }
+
+    @Test
+    void testRangeAddAndAssign() {
+        segTree.rangeAdd(0, 3, 10);
+        assertEquals(segTree.rangeSumProduct(0, 3), 1 + 2 + 3 + 4 + 40);
+        assertEquals(segTree.rangeSumProduct(2, 5), 3 + 4 + 20 + 5 + 6);
+        assertEquals(segTree.getLeaf(1).getVal(), 12);
+
+        segTree.rangeAssign(4, 11, 2);
+        assertEquals(segTree.rangeSumProduct(0, 15), 10 + 40 + 16 + 13 + 14 + 15 + 16);
+
+        segTree.flipMergeFn();
+        assertEquals(segTree.rangeSumProduct(4, 11), 256);
+        assertEquals(segTree.rangeSumProduct(3, 4), 28);
+    }
+
+    @Test
+    void testLazyMatchesNaive() {
+        Random random = new Random(42);
+        int n = 23;
+        long[] naive = new long[n];
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = random.nextInt(1000);
+            naive[i] = values[i];
+        }
+        SegmentTree iterative = new SegmentTree(values);
+        SegmentTree recursive = new SegmentTree(values);
+        recursive.setBottomUp(false);
+        boolean addition = true;
+
+        for (int i = 0; i < 2000; i++) {
+            int l = random.nextInt(n);
+            int r = l + random.nextInt(n - l);
+            int val = random.nextInt(MOD);
+            int op = random.nextInt(10);
+
+            if (op < 3) {
+                iterative.rangeAdd(l, r, val);
+                recursive.rangeAdd(l, r, val);
+                for (int j = l; j <= r; j++) {
+                    naive[j] = (naive[j] + val) % MOD;
+                }
+            } else if (op < 5) {
+                iterative.rangeAssign(l, r, val);
+                recursive.rangeAssign(l, r, val);
+                for (int j = l; j <= r; j++) {
+                    naive[j] = val;
+                }
+            } else if (op < 6) {
+                iterative.updateVal(l, val);
+                recursive.updateVal(l, val);
+                naive[l] = val;
+            } else if (op < 7) {
+                iterative.flipMergeFn();
+                recursive.flipMergeFn();
+                addition = !addition;
+            }
+
+            long expected = addition ? 0 : 1;
+            for (int j = l; j <= r; j++) {
+                expected = addition ? (expected + naive[j]) % MOD : (expected * naive[j]) % MOD;
+            }
+            assertEquals(expected, iterative.rangeSumProduct(l, r));
+            assertEquals(expected, recursive.rangeSumProduct(l, r));
+            assertEquals(naive[r], iterative.getLeaf(r).getVal());
+        }
+    }
+
+    @Test
+    void testOtherMergeFunctions() {
+        SegmentTree st = new SegmentTree(new int[]{12, 18, 30, 7, 5}, new GcdMerge());
+        assertEquals(st.getCurMergeFn(), "Gcd");
+        assertEquals(st.rangeSumProduct(0, 2), 6);
+        assertEquals(st.rangeSumProduct(0, 4), 1);
+
+        st.setMergeFn(new MinMerge());
+        assertEquals(st.rangeSumProduct(0, 2), 12);
+        st.rangeAdd(3, 4, -10);
+        assertEquals(st.rangeSumProduct(0, 4), -5);
+
+        st.setMergeFn(new XorMerge());
+        st.rangeAssign(0, 3, 9);
+        assertEquals(st.rangeSumProduct(0, 3), 0);
+        assertEquals(st.rangeSumProduct(0, 2), 9);
+
+        assertEquals(st.flipMergeFn(), "Addition");
+        assertEquals(st.rangeSumProduct(0, 4), 9 * 4 - 5);
+    }
+
+    @Test
+    void testApplyUpdates() {
+        SegmentTree sequential = new SegmentTree(new int[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11});
+        SegmentTree batched = new SegmentTree(new int[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11});
+        batched.rangeAdd(0, 10, 1);
+        sequential.rangeAdd(0, 10, 1);
+
+        int[] indices = {7, 0, 10, 7, 3};
+        int[] values = {70, 100, 5, 71, 30};
+        for (int i = 0; i < indices.length; i++) {
+            sequential.updateVal(indices[i], values[i]);
+        }
+
+        EventLog.getInstance().clear();
+        batched.applyUpdates(indices, values);
+        assertEquals(countEvents(), 2);
+
+        assertEquals(batched.getLeaf(7).getVal(), 71);
+        for (int l = 0; l < 11; l++) {
+            for (int r = l; r < 11; r++) {
+                assertEquals(sequential.rangeSumProduct(l, r), batched.rangeSumProduct(l, r));
+            }
+        }
+    }
+
+    @Test
+    void testEventLogKeepsMostRecentUpdates() {
+        SegmentTree st = new SegmentTree(new int[]{1, 2, 3}, new SumMerge());
+        for (int i = 0; i <= EventLog.MAX_EVENTS; i++) {
+            st.updateVal(i % 3, i);
+        }
+        assertEquals(countEvents(), EventLog.MAX_EVENTS);
+        Event last = null;
+        for (Event event : EventLog.getInstance()) {
+            last = event;
+        }
+        assertEquals(last.getDescription(), "Updated segment tree at node index - " + (EventLog.MAX_EVENTS % 3)
+                + " to value - " + EventLog.MAX_EVENTS);
+    }
+
+    private int countEvents() {
+        int count = 0;
+        for (Event ignored : EventLog.getInstance()) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    void testBatchRangeSumProduct() {
+        Random random = new Random(7);
+        int n = 1000;
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = random.nextInt(MOD);
+        }
+        SegmentTree st = new SegmentTree(values, new ProductMerge());
+        st.rangeAssign(100, 899, 3);
+        st.rangeAdd(0, 499, 2);
+
+        int queryCount = 2 * PARALLEL_QUERY_THRESHOLD;
+        int[] ls = new int[queryCount];
+        int[] rs = new int[queryCount];
+        for (int i = 0; i < queryCount; i++) {
+            ls[i] = random.nextInt(n);
+            rs[i] = ls[i] + random.nextInt(n - ls[i]);
+        }
+
+        TreeTrace trace = new TreeTrace();
+        st.setTrace(trace);
+        int[] results = st.rangeSumProduct(ls, rs);
+        assertEquals(trace.size(), 0);
+        for (int i = 0; i < queryCount; i++) {
+            assertEquals(st.rangeSumProduct(ls[i], rs[i]), results[i]);
+        }
+
+        int[] small = st.rangeSumProduct(new int[]{0, 5}, new int[]{n - 1, 5});
+        assertEquals(small[0], st.rangeSumProduct(0, n - 1));
+        assertEquals(small[1], st.getLeaf(5).getVal());
+    }
+
+    @Test
+    void testParallelBuildMatchesSequential() {
+        Random random = new Random(11);
+        int[] values = new int[4 * PARALLEL_BUILD_THRESHOLD + 3];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(MOD);
+        }
+
+        SegmentTree parallel = new SegmentTree(values, new ProductMerge());
+        SegmentTree sequential = new SegmentTree(values, new ProductMerge(), false);
+        for (int i = TREE_ROOT_IND; i < 2 * parallel.getCapacity(); i++) {
+            assertEquals(sequential.getTreeNodeByInd(i).getVal(), parallel.getTreeNodeByInd(i).getVal());
+        }
+
+        parallel.flipMergeFn();
+        sequential.flipMergeFn();
+        assertEquals(sequential.getTreeNodeByInd(TREE_ROOT_IND).getVal(),
+                parallel.getTreeNodeByInd(TREE_ROOT_IND).getVal());
+    }
+
+    @Test
+    void testKeptAggregates() {
+        Random random = new Random(17);
+        int n = 23;
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = random.nextInt(1000);
+        }
+        SegmentTree st = new SegmentTree(values);
+        st.addAggregate(new ProductMerge());
+        st.addAggregate(new MinMerge());
+        assertEquals(st.getAggregates().toString(), "[Addition, Product, Min]");
+
+        st.updateVal(3, 7);
+        st.applyUpdates(new int[]{0, 22}, new int[]{5, 9});
+        st.rangeAdd(4, 15, 3);
+        st.rangeAssign(10, 12, 2);
+        for (int i = 0; i < n; i++) {
+            values[i] = st.getLeaf(i).getVal();
+        }
+
+        SegmentTree product = new SegmentTree(values, new ProductMerge());
+        SegmentTree min = new SegmentTree(values, new MinMerge());
+        for (int l = 0; l < n; l++) {
+            for (int r = l; r < n; r++) {
+                assertEquals(st.rangeSumProduct(l, r, ProductMerge.NAME), product.rangeSumProduct(l, r));
+                assertEquals(st.rangeSumProduct(l, r, MinMerge.NAME), min.rangeSumProduct(l, r));
+            }
+        }
+
+        assertEquals(st.flipMergeFn(), ProductMerge.NAME);
+        assertEquals(st.getAggregates().toString(), "[Product, Min]");
+        assertEquals(st.getTreeNodeByInd(TREE_ROOT_IND).getVal(), product.rangeSumProduct(0, n - 1));
+        st.updateVal(1, 4);
+        product.updateVal(1, 4);
+        assertEquals(st.rangeSumProduct(0, n - 1), product.rangeSumProduct(0, n - 1));
+
+        st.setMergeFn(new MinMerge());
+        min.updateVal(1, 4);
+        assertEquals(st.rangeSumProduct(0, n - 1), min.rangeSumProduct(0, n - 1));
+    }
+
+    @Test
+    void testSwitchingKeepsOtherAggregates() {
+        int[] values = {3, 8, 1, 6, 4};
+        SegmentTree st = new SegmentTree(values);
+        assertEquals(st.flipMergeFn(), ProductMerge.NAME);
+        assertEquals(st.getAggregates().toString(), "[Product]");
+
+        st.addAggregate(new ProductMerge());
+        st.addAggregate(new MinMerge());
+        st.setMergeFn(new MaxMerge());
+        assertEquals(st.getAggregates().toString(), "[Max, Product, Min]");
+        st.updateVal(2, 9);
+        st.rangeAdd(0, 1, 1);
+        assertEquals(st.rangeSumProduct(0, 4), 9);
+        assertEquals(st.rangeSumProduct(0, 4, ProductMerge.NAME), 4 * 9 * 9 * 6 * 4);
+        assertEquals(st.rangeSumProduct(0, 4, MinMerge.NAME), 4);
+
+        st.setMergeFn(new SumMerge());
+        assertEquals(st.getAggregates().toString(), "[Addition, Product, Min]");
+        assertEquals(st.rangeSumProduct(0, 4), 32);
+        assertEquals(st.rangeSumProduct(1, 3, MinMerge.NAME), 6);
+        try {
+            st.rangeSumProduct(0, 4, MaxMerge.NAME);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // pass
+        }
+
+        st.setMergeFn(new MinMerge());
+        st.updateVal(4, 2);
+        assertEquals(st.getAggregates().toString(), "[Min, Product]");
+        assertEquals(st.rangeSumProduct(0, 4), 2);
+        assertEquals(st.rangeSumProduct(0, 4, ProductMerge.NAME), 4 * 9 * 9 * 6 * 2);
+    }
+
+    @Test
+    void testAggregatesAreKeyedByNameAndModulus() {
+        SegmentTree st = new SegmentTree(new int[]{3, 4, 5, 6}, new SumMerge(new ModArithmetic(7)));
+        st.addAggregate(new SumMerge());
+        assertEquals(st.getAggregates().toString(), "[Addition, Addition]");
+        assertEquals(st.rangeSumProduct(0, 3), 18 % 7);
+        assertEquals(st.rangeSumProduct(0, 3, SumMerge.NAME), 18 % 7);
+
+        st.setMergeFn(new SumMerge());
+        assertEquals(st.getAggregates().toString(), "[Addition]");
+        assertEquals(st.rangeSumProduct(0, 3), 18);
+        try {
+            st.addAggregate(new SumMerge(new ModArithmetic(7)));
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // pass
+        }
+        st.addAggregate(new SumMerge());
+        assertEquals(st.getAggregates().toString(), "[Addition]");
+    }
+
+    @Test
+    void testAggregateQueriesOnlyRead() {
+        int n = 300;
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = i % 37;
+        }
+        SegmentTree st = new SegmentTree(values);
+        st.addAggregate(new MinMerge());
+        st.addAggregate(new MaxMerge());
+        st.rangeAdd(10, 200, 5);
+        int[] sums = new int[n];
+        for (int i = 0; i < n; i++) {
+            sums[i] = st.rangeSumProduct(0, i);
+        }
+
+        // Queries of every aggregate run side by side; none of them may switch the active one
+        IntStream.range(0, 20000).parallel().forEach(step -> {
+            int r = step % n;
+            assertEquals(st.rangeSumProduct(0, r, MinMerge.NAME), 0);
+            assertEquals(st.rangeSumProduct(0, r, MaxMerge.NAME), r < 10 ? r : min(r + 5, 41));
+            assertEquals(st.rangeSumProduct(0, r), sums[r]);
+        });
+        assertEquals(st.getCurMergeFn(), SumMerge.NAME);
+    }
+
+    @Test
+    void testUnknownAggregate() {
+        try {
+            segTree.rangeSumProduct(0, 1, ProductMerge.NAME);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // pass
+        }
+        assertEquals(segTree.rangeSumProduct(0, 3, DEFAULT_MERGE_FN), 10);
+    }
+
+    @Test
+    void testRangeStats() {
+        Random random = new Random(18);
+        int n = 29;
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = random.nextInt(200001) - 100000;
+        }
+        SegmentTree st = new SegmentTree(values);
+        RangeStats stats = new RangeStats();
+        try {
+            st.rangeStats(2, 5, stats);
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException e) {
+            // pass
+        }
+
+        st.keepRangeStats();
+        assertEquals(st.getAggregates().toString(), "[Addition, Product, Min, Max]");
+        assertEquals(st.rangeStats(2, 5, stats), stats);
+        assertRangeStats(st, values);
+
+        st.rangeAdd(3, 8, -70000);
+        st.rangeAssign(12, 20, -3);
+        st.rangeAdd(0, 15, 5);
+        st.updateVal(20, 3);
+        for (int i = 0; i < n; i++) {
+            values[i] = st.getLeaf(i).getVal();
+        }
+        assertRangeStats(st, values);
+
+        st.setMergeFn(new MinMerge());
+        st.applyUpdates(new int[]{0}, new int[]{-1});
+        st.rangeStats(0, 0, stats);
+        assertEquals(stats.getSum(), MOD - 1);
+        assertEquals(stats.getMax(), -1);
+    }
+
+    @Test
+    void testAppendAndEnsureCapacity() {
+        Random random = new Random(19);
+        SegmentTree st = new SegmentTree(new int[]{4});
+        st.addAggregate(new MinMerge());
+        ArrayList<Integer> naive = new ArrayList<>();
+        naive.add(4);
+        for (int step = 0; step < 200; step++) {
+            int val = random.nextInt(1000);
+            st.append(val);
+            naive.add(val);
+            if (step % 17 == 0) {
+                st.rangeAdd(0, naive.size() / 2, 3);
+                for (int i = 0; i <= naive.size() / 2; i++) {
+                    naive.set(i, naive.get(i) + 3);
+                }
+            }
+            assertEquals(st.getLeafCount(), naive.size());
+            assertEquals(Integer.bitCount(st.getCapacity()), 1);
+            assertTrue(st.getCapacity() >= naive.size());
+
+            int l = random.nextInt(naive.size());
+            int r = l + random.nextInt(naive.size() - l);
+            int sum = 0;
+            int minVal = Integer.MAX_VALUE;
+            for (int i = l; i <= r; i++) {
+                sum += naive.get(i);
+                minVal = Math.min(minVal, naive.get(i));
+            }
+            assertEquals(st.rangeSumProduct(l, r), sum);
+            assertEquals(st.rangeSumProduct(l, r, MinMerge.NAME), minVal);
+        }
+        assertEquals(st.getCapacity(), 256);
+
+        st.ensureCapacity(1000);
+        assertEquals(st.getCapacity(), 1024);
+        assertEquals(st.getLeafCount(), naive.size());
+        assertEquals(st.rangeSumProduct(0, naive.size() - 1),
+                naive.stream().mapToInt(Integer::intValue).sum());
+        st.ensureCapacity(10);
+        assertEquals(st.getCapacity(), 1024);
+    }
+
+    @Test
+    void testDirtyLeaves() {
+        assertEquals(Arrays.toString(segTree.getDirtyLeaves()), "[]");
+        segTree.updateVal(3, 7);
+        segTree.applyUpdates(new int[]{12, 1}, new int[]{5, 6});
+        segTree.rangeAdd(5, 7, 2);
+        segTree.flipMergeFn();
+        assertEquals(Arrays.toString(segTree.getDirtyLeaves()), "[1, 3, 5, 6, 7, 12]");
+
+        segTree.clearDirtyLeaves();
+        assertEquals(Arrays.toString(segTree.getDirtyLeaves()), "[]");
+        segTree.append(3);
+        segTree.rangeAssign(0, 1, 4);
+        assertEquals(Arrays.toString(segTree.getDirtyLeaves()), "[0, 1, 16]");
+    }
+
+    @Test
+    void testGcdOfNegativeLeavesAcrossEngines() {
+        int[] values = {-613, 12, -18, 0, -18, 7};
+        SegmentTree st = new SegmentTree(values, new GcdMerge());
+        WideSegmentTree wide = new WideSegmentTree(values, new GcdMerge());
+        SparseTable sparse = new SparseTable(values, new GcdMerge());
+        CompactSegmentTree compact = new CompactSegmentTree(values, new GcdMerge());
+        PersistentSegmentTree persistent = new PersistentSegmentTree(values, new GcdMerge());
+        DynamicSegmentTree dynamic = new DynamicSegmentTree(new GcdMerge());
+        for (int i = 0; i < values.length; i++) {
+            dynamic.updateVal(i, values[i]);
+        }
+
+        for (int l = 0; l < values.length; l++) {
+            for (int r = l; r < values.length; r++) {
+                int expected = st.rangeSumProduct(l, r);
+                assertEquals(wide.rangeSumProduct(l, r), expected);
+                assertEquals(sparse.rangeSumProduct(l, r), expected);
+                assertEquals(compact.rangeSumProduct(l, r), expected);
+                assertEquals(persistent.rangeSumProduct(persistent.getLatestVersion(), l, r), expected);
+                assertEquals(dynamic.rangeSumProduct(l, r), expected);
+            }
+        }
+        assertEquals(st.rangeSumProduct(0, 0), -613);
+        assertEquals(st.rangeSumProduct(0, 1), 1);
+        assertEquals(st.rangeSumProduct(2, 4), -18);
+        assertEquals(st.rangeSumProduct(1, 2), 6);
+    }
+
+    @Test
+    void testMinRangeAddIsNotReduced() {
+        SegmentTree st = new SegmentTree(new int[]{MOD - 1, 5, MOD + 3}, new MinMerge());
+        st.rangeAdd(0, 2, 10);
+        assertEquals(st.rangeSumProduct(0, 0), MOD + 9);
+        assertEquals(st.rangeSumProduct(0, 2), 15);
+        st.rangeAdd(0, 1, 10);
+        assertEquals(st.getLeaf(0).getVal(), MOD + 19);
+    }
+
+    // EFFECTS: Checks rangeStats of every range of st against its own aggregates and separate trees over the given
+    // leaves
+    private void assertRangeStats(SegmentTree st, int[] values) {
+        int n = values.length;
+        RangeStats stats = new RangeStats();
+        SegmentTree sum = new SegmentTree(values);
+        SegmentTree product = new SegmentTree(values, new ProductMerge());
+        SegmentTree min = new SegmentTree(values, new MinMerge());
+        SegmentTree max = new SegmentTree(values, new MaxMerge());
+        for (int l = 0; l < n; l++) {
+            for (int r = l; r < n; r++) {
+                st.rangeStats(l, r, stats);
+                assertEquals(stats.getSum(), st.rangeSumProduct(l, r, SumMerge.NAME));
+                assertEquals(stats.getProduct(), st.rangeSumProduct(l, r, ProductMerge.NAME));
+                assertEquals(stats.getSum(), sum.rangeSumProduct(l, r));
+                assertEquals(stats.getProduct(), product.rangeSumProduct(l, r));
+                assertEquals(stats.getMin(), min.rangeSumProduct(l, r));
+                assertEquals(stats.getMax(), max.rangeSumProduct(l, r));
+                assertEquals(stats.getCount(), r - l + 1);
+            }
+        }
+    }
 }
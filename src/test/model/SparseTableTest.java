@@ -0,0 +1,75 @@
+package model;
+
+import model.merge.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Unit tests for the SparseTable class
+public class SparseTableTest {
+
+    @Test
+    void testMatchesSegmentTree() {
+        Random random = new Random(14);
+        MergeFunction[] fns = {new MinMerge(), new MaxMerge(), new GcdMerge(), new AndMerge(), new OrMerge()};
+        for (MergeFunction fn : fns) {
+            for (int n : new int[]{1, 2, 7, 16, 45}) {
+                int[] values = new int[n];
+                for (int i = 0; i < n; i++) {
+                    values[i] = random.nextInt(2001) - 1000;
+                }
+                SegmentTree st = new SegmentTree(values, fn);
+                SparseTable table = st.freeze();
+                assertEquals(table.getLeafCount(), n);
+                for (int l = 0; l < n; l++) {
+                    for (int r = l; r < n; r++) {
+                        assertEquals(table.rangeSumProduct(l, r), st.rangeSumProduct(l, r));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testFreezeSeesPendingTags() {
+        SegmentTree st = new SegmentTree(new int[]{5, 3, 8, 6}, new MinMerge());
+        st.rangeAssign(1, 2, 9);
+        SparseTable table = st.freeze();
+        assertEquals(table.rangeSumProduct(1, 2), 9);
+        assertEquals(table.rangeSumProduct(0, 3), 5);
+    }
+
+    @Test
+    void testUpdateFailsAndThaw() {
+        SparseTable table = new SparseTable(new int[]{4, 2, 7}, new MaxMerge());
+        try {
+            table.updateVal(0, 9);
+            fail("UnsupportedOperationException expected");
+        } catch (UnsupportedOperationException e) {
+            // pass
+        }
+
+        SegmentTree st = table.thaw();
+        st.updateVal(0, 9);
+        assertEquals(st.rangeSumProduct(0, 2), 9);
+        assertEquals(table.rangeSumProduct(0, 2), 7);
+    }
+
+    @Test
+    void testMemoryBytes() {
+        // levels of 8 leaves: 8 + 7 + 5 + 1 values
+        assertEquals(new SparseTable(new int[8], new MinMerge()).memoryBytes(), 21 * 4);
+    }
+
+    @Test
+    void testRejectsNonIdempotentMerge() {
+        try {
+            new SparseTable(new int[]{1, 2}, new SumMerge());
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // pass
+        }
+    }
+}
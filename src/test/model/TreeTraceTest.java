@@ -0,0 +1,38 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Unit tests for the TreeTrace class
+public class TreeTraceTest {
+
+    @Test
+    void testLatestRecordWins() {
+        TreeTrace trace = new TreeTrace();
+        trace.recordPath(3);
+        trace.recordCompute(5);
+        assertEquals(trace.getHighlight(3), TreeTrace.PATH_HIGHLIGHT);
+        assertEquals(trace.getColor(5), TreeNode.HIGHLIGHT_COMPUTATION_COLOR);
+        assertEquals(trace.getColor(4), TreeNode.DEFAULT_COLOR);
+
+        trace.recordCompute(3);
+        assertEquals(trace.getColor(3), TreeNode.HIGHLIGHT_COMPUTATION_COLOR);
+        trace.recordPath(3);
+        assertEquals(trace.getColor(3), TreeNode.HIGHLIGHT_PATH_COLOR);
+    }
+
+    @Test
+    void testClearAndGrow() {
+        TreeTrace trace = new TreeTrace();
+        for (int i = 1; i <= 1000; i++) {
+            trace.recordPath(i);
+        }
+        assertEquals(trace.size(), 1000);
+        assertEquals(trace.getHighlight(1), TreeTrace.PATH_HIGHLIGHT);
+
+        trace.clear();
+        assertEquals(trace.size(), 0);
+        assertEquals(trace.getHighlight(1), TreeTrace.NO_HIGHLIGHT);
+    }
+}
@@ -0,0 +1,87 @@
+package model;
+
+import model.merge.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static resources.TreeConfig.MOD;
+
+// Unit tests for the WideSegmentTree class
+public class WideSegmentTreeTest {
+
+    @Test
+    void testHeight() {
+        assertEquals(new WideSegmentTree(new int[1], new SumMerge()).getHeight(), 1);
+        assertEquals(new WideSegmentTree(new int[16], new SumMerge()).getHeight(), 2);
+        assertEquals(new WideSegmentTree(new int[17], new SumMerge()).getHeight(), 3);
+        assertEquals(new WideSegmentTree(new int[4096], new SumMerge()).getHeight(), 4);
+    }
+
+    @Test
+    void testMatchesSegmentTree() {
+        Random random = new Random(16);
+        MergeFunction[] fns = {new SumMerge(), new ProductMerge(), new MinMerge(), new MaxMerge(), new XorMerge()};
+        for (MergeFunction fn : fns) {
+            for (int n : new int[]{1, 5, 16, 17, 255, 300}) {
+                int[] values = new int[n];
+                for (int i = 0; i < n; i++) {
+                    values[i] = random.nextInt(MOD);
+                }
+                WideSegmentTree wide = new WideSegmentTree(values, fn);
+                SegmentTree st = new SegmentTree(values, fn);
+                assertEquals(wide.getLeafCount(), n);
+
+                for (int step = 0; step < 300; step++) {
+                    int ind = random.nextInt(n);
+                    int val = random.nextInt(MOD);
+                    wide.updateVal(ind, val);
+                    st.updateVal(ind, val);
+
+                    int l = random.nextInt(n);
+                    int r = l + random.nextInt(n - l);
+                    assertEquals(wide.rangeSumProduct(l, r), st.rangeSumProduct(l, r));
+                }
+                assertEquals(wide.rangeSumProduct(0, n - 1), st.rangeSumProduct(0, n - 1));
+            }
+        }
+    }
+
+    @Test
+    void testMixedSignsMatchSegmentTree() {
+        Random random = new Random(160);
+        for (MergeFunction fn : new MergeFunction[]{new SumMerge(), new ProductMerge()}) {
+            int[] values = new int[1000];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = random.nextInt();
+            }
+            WideSegmentTree wide = new WideSegmentTree(values, fn);
+            SegmentTree st = new SegmentTree(values, fn);
+
+            for (int step = 0; step < 10000; step++) {
+                if (step % 10 == 0) {
+                    int ind = random.nextInt(values.length);
+                    int val = random.nextInt();
+                    wide.updateVal(ind, val);
+                    st.updateVal(ind, val);
+                }
+                int l = random.nextInt(values.length);
+                int r = l + random.nextInt(values.length - l);
+                assertEquals(wide.rangeSumProduct(l, r), st.rangeSumProduct(l, r));
+            }
+            assertEquals(wide.rangeSumProduct(7, 7), fn.canonical(st.getLeaf(7).getVal()));
+        }
+    }
+
+    @Test
+    void testEngineSelection() {
+        int[] values = {3, 1, 2};
+        assertTrue(RangeQueryEngines.build(values, new SumMerge(), RangeQueryEngines.EngineType.WIDE_SEGMENT_TREE)
+                instanceof WideSegmentTree);
+        assertTrue(RangeQueryEngines.build(values, new SumMerge(), RangeQueryEngines.EngineType.SEGMENT_TREE)
+                instanceof SegmentTree);
+        assertTrue(RangeQueryEngines.build(values, new SumMerge(), RangeQueryEngines.EngineType.AUTO)
+                instanceof FenwickTree);
+    }
+}
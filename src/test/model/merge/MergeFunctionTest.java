@@ -0,0 +1,94 @@
+package model.merge;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Unit tests for the MergeFunction implementations
+public class MergeFunctionTest {
+    private static final String[] NAMES = {"Addition", "Product", "Min", "Max", "Gcd", "Xor", "And", "Or"};
+    private static final int[] SAMPLE = {12, 18, 7, 0, 1, 255, 36, -4, 1000000006};
+
+    @Test
+    void testFromName() {
+        for (String name : NAMES) {
+            assertEquals(MergeFunction.fromName(name).getName(), name);
+        }
+
+        try {
+            MergeFunction.fromName("Median");
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // pass
+        }
+    }
+
+    @Test
+    void testIdentity() {
+        for (String name : NAMES) {
+            MergeFunction fn = MergeFunction.fromName(name);
+            for (int val : SAMPLE) {
+                assertEquals(fn.merge(fn.identity(), val), fn.canonical(val));
+                assertEquals(fn.merge(val, fn.identity()), fn.canonical(val));
+            }
+        }
+    }
+
+    @Test
+    void testCanonical() {
+        assertEquals(new SumMerge().canonical(-4), 1000000003);
+        assertEquals(new SumMerge().canonical(1000000007), 0);
+        assertEquals(new ProductMerge().canonical(-1), 1000000006);
+        assertEquals(new SumMerge().merge(-3, 1), 1000000005);
+        assertEquals(new SumMerge().unmerge(1, 3), 1000000005);
+        assertEquals(new MinMerge().canonical(-4), -4);
+        assertEquals(new XorMerge().unmerge(6, 3), 5);
+    }
+
+    @Test
+    void testMerge() {
+        assertEquals(new SumMerge().merge(1000000006, 2), 1);
+        assertEquals(new ProductMerge().merge(500000004, 2), 1);
+        assertEquals(new MinMerge().merge(3, -2), -2);
+        assertEquals(new MaxMerge().merge(3, -2), 3);
+        assertEquals(new GcdMerge().merge(12, 18), 6);
+        assertEquals(new GcdMerge().merge(-12, 18), 6);
+        assertEquals(new GcdMerge().merge(-12, -12), -12);
+        assertEquals(new XorMerge().merge(6, 3), 5);
+        assertEquals(new AndMerge().merge(6, 3), 2);
+        assertEquals(new OrMerge().merge(6, 3), 7);
+    }
+
+    @Test
+    void testRepeatMatchesFold() {
+        for (String name : NAMES) {
+            MergeFunction fn = MergeFunction.fromName(name);
+            for (int val : SAMPLE) {
+                int folded = val;
+                for (int len = 1; len <= 20; len++) {
+                    assertEquals(fn.repeat(val, len), folded, name + " " + val + " x" + len);
+                    folded = fn.merge(folded, val);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testRangeAddSupport() {
+        SumMerge sum = new SumMerge();
+        assertTrue(sum.supportsRangeAdd());
+        assertEquals(sum.addToAll(10, 3, 4), 22);
+
+        MergeFunction min = new MinMerge();
+        assertEquals(min.addToLeaf(1000000006, 5), 1000000011);
+        assertEquals(new ProductMerge().addToLeaf(1000000006, 5), 4);
+        assertEquals(new SumMerge().addToLeaf(-5, -3), -8);
+        assertFalse(min.supportsRangeAdd());
+        try {
+            min.addToAll(1, 1, 2);
+            fail("UnsupportedOperationException expected");
+        } catch (UnsupportedOperationException e) {
+            // pass
+        }
+    }
+}
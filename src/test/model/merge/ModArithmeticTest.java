@@ -0,0 +1,67 @@
+package model.merge;
+
+import model.SegmentTree;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static resources.TreeConfig.MOD;
+
+// Unit tests for the ModArithmetic class
+public class ModArithmeticTest {
+    private static final int[] EDGES = {0, 1, -1, MOD - 1, MOD, MOD + 1, -MOD, Integer.MAX_VALUE,
+            Integer.MIN_VALUE, Integer.MIN_VALUE + 1};
+
+    @Test
+    void testMatchesFloorMod() {
+        Random random = new Random(3);
+        for (int modulus : new int[]{MOD, 998244353, 2, 3, 2147483647}) {
+            ModArithmetic arithmetic = new ModArithmetic(modulus);
+            assertEquals(arithmetic.getModulus(), modulus);
+
+            for (int a : EDGES) {
+                for (int b : EDGES) {
+                    assertEquals(Math.floorMod(0L + a + b, modulus), arithmetic.add(a, b));
+                    assertEquals(Math.floorMod(1L * a * b, modulus), arithmetic.multiply(a, b));
+                }
+            }
+            for (int i = 0; i < 100000; i++) {
+                int a = random.nextInt();
+                int b = random.nextInt();
+                assertEquals(Math.floorMod(0L + a + b, modulus), arithmetic.add(a, b));
+                assertEquals(Math.floorMod(1L * a * b, modulus), arithmetic.multiply(a, b));
+
+                long x = random.nextLong() >> 1;
+                assertEquals(Math.floorMod(x, modulus), arithmetic.reduce(x));
+            }
+            assertEquals(Math.floorMod(1L << 62, modulus), arithmetic.reduce(1L << 62));
+            assertEquals(Math.floorMod(-(1L << 62), modulus), arithmetic.reduce(-(1L << 62)));
+        }
+    }
+
+    @Test
+    void testRejectsNonPrimeModulus() {
+        for (int modulus : new int[]{0, 1, -7, 1000000000}) {
+            try {
+                new ModArithmetic(modulus);
+                fail("IllegalArgumentException expected");
+            } catch (IllegalArgumentException e) {
+                // pass
+            }
+        }
+    }
+
+    @Test
+    void testRuntimeModulusInTree() {
+        ModArithmetic arithmetic = new ModArithmetic(7);
+        SegmentTree st = new SegmentTree(new int[]{3, 4, 5, 6}, new SumMerge(arithmetic));
+        assertEquals(st.rangeSumProduct(0, 3), 18 % 7);
+        st.rangeAdd(0, 3, 2);
+        assertEquals(st.rangeSumProduct(0, 3), 26 % 7);
+
+        st.setMergeFn(new ProductMerge(arithmetic));
+        assertEquals(st.rangeSumProduct(0, 1), 30 % 7);
+        assertEquals(st.getMergeFn().getModulus(), 7);
+    }
+}
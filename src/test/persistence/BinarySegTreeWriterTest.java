@@ -0,0 +1,184 @@
+package persistence;
+
+import model.SegmentTree;
+import model.merge.MinMerge;
+import model.merge.ModArithmetic;
+import model.merge.ProductMerge;
+import model.merge.SumMerge;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// Unit tests for the BinarySegTreeWriter and BinarySegTreeReader classes
+public class BinarySegTreeWriterTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void testWriterRoundTrip() {
+        String file = dir.resolve("segTree.bin").toString();
+        SegmentTree segTree = new SegmentTree(new int[]{1, 2, 3, 4, 5}, new ProductMerge());
+        segTree.rangeAdd(0, 1, 10);
+        try {
+            new BinarySegTreeWriter(file).write(segTree);
+            assertEquals(Files.size(Path.of(file)), BinarySegTreeWriter.FIXED_HEADER_BYTES
+                    + ProductMerge.NAME.length() + 5 * Integer.BYTES);
+
+            SegmentTree read = new BinarySegTreeReader(file).read();
+            assertEquals(read.getCurMergeFn(), ProductMerge.NAME);
+            assertEquals(read.getLeafCount(), 5);
+            assertEquals(read.rangeSumProduct(0, 4), 11 * 12 * 3 * 4 * 5);
+        } catch (IOException e) {
+            fail("Couldn't round-trip the snapshot");
+        }
+    }
+
+    @Test
+    void testWriterLargeTreeAndModulus() {
+        String file = dir.resolve("large.bin").toString();
+        Random random = new Random(21);
+        int[] values = new int[200003];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(998244353);
+        }
+        SegmentTree segTree = new SegmentTree(values, new SumMerge(new ModArithmetic(998244353)));
+        try {
+            new BinarySegTreeWriter(file).write(segTree);
+            SegmentTree read = new BinarySegTreeReader(file).read();
+            assertEquals(read.getMergeFn().getModulus(), 998244353);
+            assertEquals(read.getLeafValues().length, values.length);
+            for (int i = 0; i < values.length; i += 997) {
+                assertEquals(read.getLeaf(i).getVal(), values[i]);
+            }
+            assertEquals(read.rangeSumProduct(0, values.length - 1), segTree.rangeSumProduct(0, values.length - 1));
+        } catch (IOException e) {
+            fail("Couldn't round-trip the snapshot");
+        }
+    }
+
+    @Test
+    void testReaderNonExistentFile() {
+        try {
+            new BinarySegTreeReader(dir.resolve("random.bin").toString()).read();
+            fail("IOException expected");
+        } catch (IOException e) {
+            // pass
+        }
+    }
+
+    @Test
+    void testReaderCorruptFiles() throws IOException {
+        Path notSnapshot = dir.resolve("json.bin");
+        Files.write(notSnapshot, "{\"leaves\": []}".getBytes());
+
+        Path truncated = dir.resolve("truncated.bin");
+        new BinarySegTreeWriter(truncated.toString()).write(new SegmentTree(new int[]{4, 5}, new MinMerge()));
+        byte[] bytes = Files.readAllBytes(truncated);
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 1));
+
+        for (Path file : new Path[]{notSnapshot, truncated}) {
+            try {
+                new BinarySegTreeReader(file.toString()).read();
+                fail("IOException expected");
+            } catch (IOException e) {
+                // pass
+            }
+        }
+    }
+
+    @Test
+    void testWriteNodesRoundTrip() {
+        String file = dir.resolve("nodes.bin").toString();
+        SegmentTree segTree = new SegmentTree(new int[]{1, 2, 3, 4, 5}, new ProductMerge());
+        segTree.rangeAdd(1, 3, 10);
+        try {
+            new BinarySegTreeWriter(file).writeNodes(segTree);
+            assertEquals(Files.size(Path.of(file)), BinarySegTreeWriter.FIXED_HEADER_BYTES
+                    + ProductMerge.NAME.length() + (2 * 8 + 1) * Integer.BYTES);
+
+            BinarySegTreeReader reader = new BinarySegTreeReader(file, true);
+            SegmentTree read = reader.read();
+            assertEquals(read.getCurMergeFn(), ProductMerge.NAME);
+            assertEquals(read.getLeafCount(), 5);
+            assertEquals(read.getCapacity(), 8);
+            assertEquals(Arrays.toString(read.getLeafValues()), "[1, 12, 13, 14, 5]");
+            assertEquals(read.rangeSumProduct(0, 4), 12 * 13 * 14 * 5);
+            assertEquals(reader.getVerification().get().intValue(), BinarySegTreeReader.NO_MISMATCH);
+
+            read.updateVal(0, 2);
+            read.append(3);
+            assertEquals(read.rangeSumProduct(0, 5), 2 * 12 * 13 * 14 * 5 * 3);
+
+            new BinarySegTreeReader(file).read();
+        } catch (IOException | InterruptedException | ExecutionException e) {
+            fail("Couldn't round-trip the full-node snapshot");
+        }
+    }
+
+    @Test
+    void testReadNodesChecksumAndVerification() throws IOException, InterruptedException, ExecutionException {
+        Path file = dir.resolve("nodes.bin");
+        new BinarySegTreeWriter(file.toString()).writeNodes(new SegmentTree(new int[]{4, 5, 6}, new SumMerge()));
+        byte[] bytes = Files.readAllBytes(file);
+        int nodesStart = BinarySegTreeWriter.FIXED_HEADER_BYTES + SumMerge.NAME.length();
+
+        // A flipped bit fails the checksum
+        byte[] flipped = Arrays.copyOf(bytes, bytes.length);
+        flipped[nodesStart + 5 * Integer.BYTES] ^= 1;
+        Files.write(file, flipped);
+        BinarySegTreeReader reader = new BinarySegTreeReader(file.toString(), true);
+        try {
+            reader.read();
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertNull(reader.getVerification());
+        }
+
+        // A node that is not the merge of its children but carries a matching checksum is found in the background
+        ByteBuffer tampered = ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length)).order(ByteOrder.LITTLE_ENDIAN);
+        tampered.putInt(nodesStart + 2 * Integer.BYTES, 100);
+        CRC32C checksum = new CRC32C();
+        checksum.update(tampered.array(), 0, bytes.length - Integer.BYTES);
+        tampered.putInt(bytes.length - Integer.BYTES, (int) checksum.getValue());
+        Files.write(file, tampered.array());
+        SegmentTree read = reader.read();
+        assertEquals(read.rangeSumProduct(0, 1), 100);
+        assertEquals(reader.getVerification().get().intValue(), 2);
+
+        assertNull(new BinarySegTreeReader(file.toString()).getVerification());
+    }
+
+    @Test
+    void testWriteReplacesFileAtomically() throws IOException {
+        Path file = dir.resolve("nodes.bin");
+        new BinarySegTreeWriter(file.toString()).writeNodes(new SegmentTree(new int[]{4, 5, 6}, new SumMerge()));
+        new BinarySegTreeWriter(file.toString()).writeNodes(new SegmentTree(new int[]{7, 8}, new SumMerge()));
+        assertEquals(new BinarySegTreeReader(file.toString()).read().rangeSumProduct(0, 1), 15);
+        assertFalse(Files.exists(dir.resolve("nodes.bin.tmp")));
+
+        // A write that fails leaves the previous snapshot in place
+        byte[] before = Files.readAllBytes(file);
+        Files.createDirectory(dir.resolve("nodes.bin.tmp"));
+        try {
+            new BinarySegTreeWriter(file.toString()).write(new SegmentTree(new int[]{1}, new MinMerge()));
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertArrayEquals(Files.readAllBytes(file), before);
+        }
+    }
+}
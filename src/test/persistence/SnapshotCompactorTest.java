@@ -0,0 +1,151 @@
+package persistence;
+
+import model.SegmentTree;
+import model.merge.ProductMerge;
+import model.merge.SumMerge;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// Unit tests for delta snapshots and the SnapshotCompactor class
+public class SnapshotCompactorTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void testDeltasAndCompaction() throws IOException {
+        String base = dir.resolve("segTree.bin").toString();
+        String delta1 = dir.resolve("segTree.delta1").toString();
+        String delta2 = dir.resolve("segTree.delta2").toString();
+        SegmentTree segTree = new SegmentTree(new int[]{1, 2, 3, 4, 5}, new SumMerge());
+        segTree.updateVal(0, 9);
+        new BinarySegTreeWriter(base).writeBase(segTree);
+        assertEquals(Arrays.toString(segTree.getDirtyLeaves()), "[]");
+
+        segTree.updateVal(1, 10);
+        segTree.rangeAdd(3, 4, 2);
+        new BinarySegTreeWriter(delta1).writeDelta(segTree, base);
+        assertEquals(Files.size(Path.of(delta1)), BinarySegTreeWriter.FIXED_HEADER_BYTES + SumMerge.NAME.length()
+                + Long.BYTES + 3 * 2 * Integer.BYTES + Integer.BYTES);
+
+        segTree.append(8);
+        segTree.append(11);
+        segTree.updateVal(2, 7);
+        segTree.flipMergeFn();
+        new BinarySegTreeWriter(delta2).writeDelta(segTree, base);
+        assertEquals(Arrays.toString(segTree.getDirtyLeaves()), "[]");
+
+        SnapshotCompactor compactor = new SnapshotCompactor(base);
+        SegmentTree read = compactor.read(List.of(delta1));
+        assertEquals(Arrays.toString(read.getLeafValues()), "[9, 10, 3, 6, 7]");
+        assertEquals(read.getCurMergeFn(), SumMerge.NAME);
+
+        SegmentTree compacted = compactor.compact(List.of(delta1, delta2));
+        assertEquals(Arrays.toString(compacted.getLeafValues()), "[9, 10, 7, 6, 7, 8, 11]");
+        assertEquals(compacted.getCurMergeFn(), ProductMerge.NAME);
+        assertEquals(compacted.rangeSumProduct(0, 6), segTree.rangeSumProduct(0, 6));
+        assertTrue(Files.notExists(Path.of(delta1)));
+        assertTrue(Files.notExists(Path.of(delta2)));
+        assertEquals(ByteBuffer.wrap(Files.readAllBytes(Path.of(base))).order(ByteOrder.LITTLE_ENDIAN)
+                .getInt(Integer.BYTES), BinarySegTreeWriter.NODES_FORMAT_VERSION);
+
+        SegmentTree reread = new BinarySegTreeReader(base).read();
+        assertEquals(Arrays.toString(reread.getLeafValues()), "[9, 10, 7, 6, 7, 8, 11]");
+        assertEquals(reread.getCurMergeFn(), ProductMerge.NAME);
+    }
+
+    @Test
+    void testMismatchedSnapshotKinds() throws IOException {
+        String base = dir.resolve("segTree.bin").toString();
+        String delta = dir.resolve("segTree.delta").toString();
+        SegmentTree segTree = new SegmentTree(new int[]{1, 2, 3}, new SumMerge());
+        new BinarySegTreeWriter(base).writeBase(segTree);
+        segTree.updateVal(2, 6);
+        new BinarySegTreeWriter(delta).writeDelta(segTree, base);
+
+        try {
+            new BinarySegTreeReader(delta).read();
+            fail("IOException expected");
+        } catch (IOException e) {
+            // pass
+        }
+        try {
+            new BinarySegTreeReader(base).applyDelta(segTree, 0L);
+            fail("IOException expected");
+        } catch (IOException e) {
+            // pass
+        }
+
+        byte[] bytes = Files.readAllBytes(Path.of(delta));
+        bytes[bytes.length - Integer.BYTES - 1] ^= 1;
+        Files.write(Path.of(delta), bytes);
+        try {
+            new SnapshotCompactor(base).compact(List.of(delta));
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertTrue(Files.exists(Path.of(delta)));
+            assertEquals(Arrays.toString(new BinarySegTreeReader(base).read().getLeafValues()), "[1, 2, 3]");
+        }
+    }
+
+    @Test
+    void testOtherSnapshotsDoNotBreakTheChain() throws IOException {
+        String base = dir.resolve("segTree.bin").toString();
+        String delta = dir.resolve("segTree.delta").toString();
+        SegmentTree segTree = new SegmentTree(new int[]{1, 2, 3, 4}, new SumMerge());
+        new BinarySegTreeWriter(base).writeBase(segTree);
+
+        segTree.updateVal(1, 50);
+        try (TreeJournal journal = new TreeJournal(dir.resolve("segTree.journal").toString(), 0)) {
+            journal.attach(segTree);
+            journal.checkpoint(dir.resolve("checkpoint.bin").toString());
+        }
+        new BinarySegTreeWriter(dir.resolve("other.bin").toString()).write(segTree);
+        segTree.updateVal(2, 60);
+        new BinarySegTreeWriter(delta).writeDelta(segTree, base);
+
+        SegmentTree compacted = new SnapshotCompactor(base).compact(List.of(delta));
+        assertEquals(Arrays.toString(compacted.getLeafValues()), "[1, 50, 60, 4]");
+        assertEquals(Arrays.toString(compacted.getLeafValues()), Arrays.toString(segTree.getLeafValues()));
+    }
+
+    @Test
+    void testStaleDeltasAreSkipped() throws IOException {
+        String base = dir.resolve("segTree.bin").toString();
+        String delta1 = dir.resolve("segTree.delta1").toString();
+        String delta2 = dir.resolve("segTree.delta2").toString();
+        Path stale = dir.resolve("stale.delta");
+        SegmentTree segTree = new SegmentTree(new int[]{1, 2, 3, 4}, new SumMerge());
+        new BinarySegTreeWriter(base).writeBase(segTree);
+        segTree.append(5);
+        segTree.updateVal(0, 7);
+        new BinarySegTreeWriter(delta1).writeDelta(segTree, base);
+        Files.copy(Path.of(delta1), stale);
+        new SnapshotCompactor(base).compact(List.of(delta1));
+
+        // A crash between moving the new base into place and deleting the deltas leaves delta1 behind
+        Files.copy(stale, Path.of(delta1));
+        segTree.updateVal(0, 8);
+        segTree.append(6);
+        new BinarySegTreeWriter(delta2).writeDelta(segTree, base);
+        SegmentTree compacted = new SnapshotCompactor(base).compact(List.of(delta1, delta2));
+        assertEquals(Arrays.toString(compacted.getLeafValues()), "[8, 2, 3, 4, 5, 6]");
+        assertTrue(Files.notExists(Path.of(delta1)));
+
+        // delta1 now comes from a smaller tree than the base and would also undo the update to leaf 0
+        Files.copy(stale, Path.of(delta1));
+        assertEquals(Arrays.toString(new SnapshotCompactor(base).compact(List.of(delta1)).getLeafValues()),
+                "[8, 2, 3, 4, 5, 6]");
+    }
+}
@@ -0,0 +1,123 @@
+package persistence;
+
+import model.SegmentTree;
+import model.merge.MaxMerge;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// Unit tests for the StreamingJsonSegTreeReader class
+public class StreamingJsonSegTreeReaderTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void testReaderNonExistentFile() {
+        try {
+            new StreamingJsonSegTreeReader("./data/random.json").read();
+            fail("IOException expected");
+        } catch (IOException e) {
+            //pass
+        }
+    }
+
+    @Test
+    void testReaderSegTreeAddFn() {
+        try {
+            SegmentTree st = new StreamingJsonSegTreeReader("./data/segTreeAddn.json").read();
+            assertEquals(st.rangeSumProduct(1, 2), 5);
+        } catch (IOException e) {
+            fail("Couldn't read from file");
+        }
+    }
+
+    @Test
+    void testReaderSegTreeProductFn() {
+        try {
+            SegmentTree st = new StreamingJsonSegTreeReader("./data/segTreeMult.json").read();
+            assertEquals(st.rangeSumProduct(1, 2), 6);
+        } catch (IOException e) {
+            fail("Couldn't read from file");
+        }
+    }
+
+    @Test
+    void testReaderLargeTreeAcrossBuffers() {
+        String file = dir.resolve("large.json").toString();
+        Random random = new Random(22);
+        int[] values = new int[50001];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt() / 2;
+        }
+        SegmentTree segTree = new SegmentTree(values, new MaxMerge());
+        try {
+            JsonSegTreeWriter writer = new JsonSegTreeWriter(file);
+            writer.open();
+            writer.write(segTree);
+            writer.close();
+
+            SegmentTree read = new StreamingJsonSegTreeReader(file).read();
+            assertEquals(read.getCurMergeFn(), MaxMerge.NAME);
+            assertEquals(read.getLeafCount(), values.length);
+            for (int i = 0; i < values.length; i++) {
+                assertEquals(read.getLeaf(i).getVal(), values[i]);
+            }
+            assertEquals(read.rangeSumProduct(0, values.length - 1), segTree.rangeSumProduct(0, values.length - 1));
+        } catch (FileNotFoundException e) {
+            fail("Couldn't open file for writing");
+        } catch (IOException e) {
+            fail("Couldn't read from file");
+        }
+    }
+
+    @Test
+    void testReaderKeysInAnyOrderAndUnknownKeys() {
+        Path file = dir.resolve("reordered.json");
+        try {
+            Files.writeString(file, "{\"version\": [1, {\"a\": null}], \"mergeFunc\": \"Addition\",\n"
+                    + "\"leaves\": [{\"value\": -4, \"color\": \"\\u001b[47m \\\"x\\\"\"},\n"
+                    + "{\"tag\": true, \"value\": 7}]}");
+            SegmentTree st = new StreamingJsonSegTreeReader(file.toString()).read();
+            assertEquals(st.getLeafCount(), 2);
+            assertEquals(st.getLeaf(0).getVal(), -4);
+            assertEquals(st.rangeSumProduct(0, 1), 3);
+        } catch (IOException e) {
+            fail("Couldn't read from file");
+        }
+    }
+
+    @Test
+    void testReaderMalformedFiles() {
+        String[] malformed = {
+            "{\"leaves\": [{\"value\": 1}, {\"value\": 2}], \"mergeFunc\": \"Addition\"",
+            "{\"leaves\": [{\"value\": 1.5}], \"mergeFunc\": \"Addition\"}",
+            "{\"leaves\": [{\"value\": 3000000000}], \"mergeFunc\": \"Addition\"}",
+            "{\"leaves\": [{\"color\": \"\"}], \"mergeFunc\": \"Addition\"}",
+            "{\"leaves\": [{\"value\": 1}]}",
+            "{\"leaves\": [{\"value\": 1}] \"mergeFunc\": \"Addition\"}",
+            "{\"leaves\": [{\"value\": 1}], \"mergeFunc\": \"Subtraction\"}"
+        };
+        for (int i = 0; i < malformed.length; i++) {
+            Path file = dir.resolve("malformed" + i + ".json");
+            try {
+                Files.writeString(file, malformed[i]);
+            } catch (IOException e) {
+                fail("Couldn't write test file");
+            }
+            try {
+                new StreamingJsonSegTreeReader(file.toString()).read();
+                fail("IOException expected for " + malformed[i]);
+            } catch (IOException e) {
+                //pass
+            }
+        }
+    }
+}
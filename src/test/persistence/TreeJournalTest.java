@@ -0,0 +1,164 @@
+package persistence;
+
+import model.SegmentTree;
+import model.merge.MaxMerge;
+import model.merge.ProductMerge;
+import model.merge.SumMerge;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// Unit tests for the TreeJournal class
+public class TreeJournalTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void testRecoverEveryChange() throws IOException {
+        String snapshot = dir.resolve("segTree.bin").toString();
+        String journalFile = dir.resolve("segTree.journal").toString();
+        SegmentTree segTree = new SegmentTree(new int[]{1, 2, 3, 4, 5}, new SumMerge());
+
+        TreeJournal journal = new TreeJournal(journalFile, 0);
+        journal.attach(segTree);
+        segTree.updateVal(0, 10);
+        segTree.applyUpdates(new int[]{1, 2}, new int[]{20, 30});
+        segTree.append(6);
+        segTree.rangeAdd(0, 2, 1);
+        segTree.rangeAssign(4, 5, 7);
+        segTree.flipMergeFn();
+        journal.close();
+        assertNull(segTree.getListener());
+
+        SegmentTree recovered = TreeJournal.recover(snapshot, journalFile);
+        assertEquals(recovered.getCurMergeFn(), ProductMerge.NAME);
+        assertEquals(Arrays.toString(recovered.getLeafValues()), Arrays.toString(segTree.getLeafValues()));
+        assertEquals(Arrays.toString(recovered.getLeafValues()), "[11, 21, 31, 4, 7, 7]");
+        assertEquals(recovered.rangeSumProduct(0, 5), segTree.rangeSumProduct(0, 5));
+        assertNull(recovered.getListener());
+    }
+
+    @Test
+    void testGroupCommit() throws IOException {
+        String journalFile = dir.resolve("segTree.journal").toString();
+        SegmentTree segTree = new SegmentTree(new int[]{1, 2, 3, 4}, new MaxMerge());
+
+        // An interval longer than the test: nothing is committed but what commit() and attach() force
+        TreeJournal journal = new TreeJournal(journalFile, 3_600_000);
+        journal.attach(segTree);
+        segTree.updateVal(0, 8);
+        journal.commit();
+        segTree.updateVal(1, 9);
+
+        SegmentTree recovered = TreeJournal.recover(dir.resolve("none.bin").toString(), journalFile);
+        assertEquals(Arrays.toString(recovered.getLeafValues()), "[8, 2, 3, 4]");
+        journal.close();
+
+        recovered = TreeJournal.recover(dir.resolve("none.bin").toString(), journalFile);
+        assertEquals(Arrays.toString(recovered.getLeafValues()), "[8, 9, 3, 4]");
+        assertEquals(recovered.getCurMergeFn(), MaxMerge.NAME);
+    }
+
+    @Test
+    void testCheckpoint() throws IOException {
+        String snapshot = dir.resolve("segTree.bin").toString();
+        String journalFile = dir.resolve("segTree.journal").toString();
+        Path beforeCheckpoint = dir.resolve("before.journal");
+        SegmentTree segTree = new SegmentTree(new int[]{1, 2, 3}, new SumMerge());
+
+        TreeJournal journal = new TreeJournal(journalFile, 0);
+        journal.attach(segTree);
+        segTree.updateVal(2, 5);
+        Files.copy(Path.of(journalFile), beforeCheckpoint);
+        journal.checkpoint(snapshot);
+        assertEquals(Files.size(Path.of(journalFile)), (long) TreeJournal.HEADER_BYTES);
+        segTree.rangeAdd(0, 2, 1);
+        Path afterCheckpoint = dir.resolve("after.journal");
+        Files.copy(Path.of(journalFile), afterCheckpoint);
+        segTree.updateVal(0, 9);
+        journal.checkpoint(snapshot);
+        segTree.updateVal(1, 4);
+        journal.close();
+
+        assertEquals(Arrays.toString(TreeJournal.recover(snapshot, journalFile).getLeafValues()), "[9, 4, 6]");
+
+        // A crash right after the snapshot was replaced leaves a journal from before it
+        Files.copy(afterCheckpoint, Path.of(journalFile), StandardCopyOption.REPLACE_EXISTING);
+        assertEquals(Arrays.toString(TreeJournal.recover(snapshot, journalFile).getLeafValues()), "[9, 3, 6]");
+        Files.copy(beforeCheckpoint, Path.of(journalFile), StandardCopyOption.REPLACE_EXISTING);
+        assertEquals(Arrays.toString(TreeJournal.recover(snapshot, journalFile).getLeafValues()), "[1, 2, 5]");
+    }
+
+    @Test
+    void testFailureIsReportedOnCommitAndClose() throws IOException {
+        String journalFile = dir.resolve("segTree.journal").toString();
+        SegmentTree segTree = new SegmentTree(new int[]{1, 2}, new SumMerge());
+        TreeJournal journal = new TreeJournal(journalFile, 0);
+        journal.attach(segTree);
+        segTree.updateVal(0, 3);
+
+        // An interrupted write closes the journal channel; the change itself must still go through
+        Thread.currentThread().interrupt();
+        segTree.updateVal(1, 4);
+        assertTrue(Thread.interrupted());
+        segTree.updateVal(0, 5);
+        assertEquals(Arrays.toString(segTree.getLeafValues()), "[5, 4]");
+        for (int i = 0; i < 2; i++) {
+            try {
+                if (i == 0) {
+                    journal.commit();
+                } else {
+                    journal.close();
+                }
+                fail("IOException expected");
+            } catch (IOException e) {
+                // pass
+            }
+        }
+        assertNull(segTree.getListener());
+
+        SegmentTree recovered = TreeJournal.recover(dir.resolve("none.bin").toString(), journalFile);
+        assertEquals(Arrays.toString(recovered.getLeafValues()), "[3, 2]");
+    }
+
+    @Test
+    void testRecoverTornJournal() throws IOException {
+        String journalFile = dir.resolve("segTree.journal").toString();
+        SegmentTree segTree = new SegmentTree(new int[]{1, 2}, new SumMerge());
+        TreeJournal journal = new TreeJournal(journalFile, 0);
+        journal.attach(segTree);
+        segTree.updateVal(0, 3);
+        segTree.updateVal(1, 4);
+        journal.close();
+
+        byte[] bytes = Files.readAllBytes(Path.of(journalFile));
+        Files.write(Path.of(journalFile), Arrays.copyOf(bytes, bytes.length - 3));
+        SegmentTree recovered = TreeJournal.recover(dir.resolve("none.bin").toString(), journalFile);
+        assertEquals(Arrays.toString(recovered.getLeafValues()), "[3, 2]");
+    }
+
+    @Test
+    void testRecoverNothing() throws IOException {
+        Path notJournal = dir.resolve("segTree.json");
+        Files.writeString(notJournal, "{\"leaves\": []}");
+        String[] journals = {dir.resolve("none.journal").toString(), notJournal.toString()};
+        for (String journalFile : journals) {
+            try {
+                TreeJournal.recover(dir.resolve("none.bin").toString(), journalFile);
+                fail("IOException expected");
+            } catch (IOException e) {
+                // pass
+            }
+        }
+    }
+}
@@ -2,18 +2,22 @@ package renderer;
 
 import model.SegmentTree;
 import model.TreeNode;
+import model.TreeTrace;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static resources.TreeConfig.MAX_LEAVES;
 import static resources.TreeConfig.NODE_LEN;
 
 // Unit tests for ConsoleTreeRenderer class
 public class ConsoleTreeRendererTest {
     private ConsoleTreeRenderer renderer;
+    private SegmentTree segTree;
 
     @BeforeEach
     void runBefore() {
@@ -21,7 +25,7 @@ public class ConsoleTreeRendererTest {
         for (int i = 1; i <= MAX_LEAVES; i++) {
             arr.add(new TreeNode(i));
         }
-        SegmentTree segTree = new SegmentTree(arr);
+        segTree = new SegmentTree(arr);
 
         renderer = new ConsoleTreeRenderer(segTree);
     }
@@ -55,6 +59,35 @@ public class ConsoleTreeRendererTest {
 
     }
 
+    @Test
+    void testRenderGrownTree() {
+        assertEquals(renderer.render().split("\n").length, 5);
+
+        segTree.append(17);
+        String[] levels = renderer.render().split("\n");
+        assertEquals(levels.length, 6);
+        for (String level : levels) {
+            assertEquals(removeColor(level).length(), 2 * 32 * NODE_LEN);
+        }
+        assertTrue(removeColor(levels[0]).contains(" 153 "));
+    }
+
+    @Test
+    void testRenderTrace() {
+        TreeTrace trace = new TreeTrace();
+        segTree.setTrace(trace);
+        segTree.updateVal(0, 5);
+
+        String renderedString = renderer.render();
+        String[] levels = renderedString.split("\n");
+        assertTrue(levels[0].contains(TreeNode.HIGHLIGHT_PATH_COLOR));
+        assertTrue(levels[levels.length - 1].startsWith(TreeNode.HIGHLIGHT_COMPUTATION_COLOR));
+        assertEquals(trace.size(), 0);
+
+        String rerenderedString = renderer.render();
+        assertFalse(rerenderedString.contains(TreeNode.HIGHLIGHT_COMPUTATION_COLOR));
+    }
+
     /*
      * Code Reference: [https://stackoverflow.com/a/14652763]
      * EFFECTS: Removes the ASCII color codes from a given string